@@ -0,0 +1,291 @@
+package com.kampis_elektroecke.dogsvscats;
+
+import android.app.Activity;
+import android.app.Fragment;
+import android.content.ClipData;
+import android.content.Intent;
+import android.net.Uri;
+import android.os.Bundle;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.Button;
+import android.widget.ProgressBar;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+
+import com.kampis_elektroecke.dogsvscats.ObjectDetection.BatchClassifier;
+import com.kampis_elektroecke.dogsvscats.ObjectDetection.Classification;
+import com.kampis_elektroecke.dogsvscats.ObjectDetection.ModelRegistry;
+import com.kampis_elektroecke.dogsvscats.ObjectDetection.ObjectDetection;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+public class BatchFragment extends Fragment implements ObjectDetection.IObjectDetection, BatchClassifier.IBatchClassification
+{
+    private final int RQ_IMAGES_CODE = 200;
+    private final int RQ_FOLDER_CODE = 201;
+
+    private final int BATCH_SIZE = 8;
+
+    private ObjectDetection _mDetection;
+
+    private BatchClassifier _mClassifier;
+
+    private Button _mSelectImages;
+    private Button _mSelectFolder;
+    private Button _mCancel;
+
+    private ProgressBar _mProgress;
+
+    private TextView _mReport;
+
+    private AtomicIntegerArray _mClassCounts;
+
+    /**
+     *  Small method to get the view and avoid the warning
+     *  "Method invocation 'findViewById' may produce 'NullPointerException"
+     *  from Android Studio
+     * @return View
+     */
+    private View _getView()
+    {
+        View view = getView();
+        assert(view != null);
+
+        return view;
+    }
+
+    /**
+     * Enable the controls for the current state.
+     * @param Running: true if a batch is running
+     */
+    private void _setRunning(boolean Running)
+    {
+        boolean Ready = _mDetection.getIsModelReady();
+
+        _mSelectImages.setEnabled(Ready && !Running);
+        _mSelectFolder.setEnabled(Ready && !Running);
+        _mCancel.setEnabled(Running);
+    }
+
+    /**
+     * Reset the class counters and start the classifier.
+     */
+    private void _prepareBatch()
+    {
+        _mClassCounts = new AtomicIntegerArray(_mDetection.getClassCount());
+        _mProgress.setProgress(0);
+        _mReport.setText("");
+
+        _setRunning(true);
+    }
+
+    /**
+     * Batch fragment on create view callback.
+     * @param inflater: Layout inflater
+     * @param container: Current view group
+     * @param savedInstanceState: Bundle with saved data
+     * @return Inflated view
+     */
+    @Override
+    public View onCreateView(LayoutInflater inflater, ViewGroup container, Bundle savedInstanceState)
+    {
+        return inflater.inflate(R.layout.fragment_batch, container, false);
+    }
+
+    /**
+     * Batch fragment on activity created callback.
+     * @param savedInstanceState: Bundle with saved instance data
+     */
+    @Override
+    public void onActivityCreated(Bundle savedInstanceState)
+    {
+        super.onActivityCreated(savedInstanceState);
+
+        _mSelectImages = _getView().findViewById(R.id.ButtonSelectImages);
+        _mSelectFolder = _getView().findViewById(R.id.ButtonSelectFolder);
+        _mCancel = _getView().findViewById(R.id.ButtonCancelBatch);
+        _mProgress = _getView().findViewById(R.id.ProgressBatch);
+        _mReport = _getView().findViewById(R.id.TextBatchReport);
+
+        _mSelectImages.setOnClickListener((view) ->
+        {
+            Intent Picker = new Intent(Intent.ACTION_OPEN_DOCUMENT);
+            Picker.addCategory(Intent.CATEGORY_OPENABLE);
+            Picker.setType("image/*");
+            Picker.putExtra(Intent.EXTRA_ALLOW_MULTIPLE, true);
+            startActivityForResult(Picker, RQ_IMAGES_CODE);
+        });
+
+        _mSelectFolder.setOnClickListener((view) ->
+                startActivityForResult(new Intent(Intent.ACTION_OPEN_DOCUMENT_TREE), RQ_FOLDER_CODE)
+        );
+
+        _mCancel.setOnClickListener((view) -> _mClassifier.cancel());
+
+        // Get the TensorFlow model. The registry shares the model with the other fragments
+        _mDetection = ModelRegistry.acquire(getActivity(),
+                                "Model.tflite",
+                                "Label.txt",
+                                getArguments()
+                                );
+        _mDetection.addListener(this);
+
+        if(!_mDetection.getError().equals(ObjectDetection.IObjectDetection.NO_ERROR))
+        {
+            onDetectionError(_mDetection.getError());
+        }
+
+        // Use all cores but one for the decoders, the remaining core runs the inference
+        int Decoders = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+        _mClassifier = new BatchClassifier(getActivity().getContentResolver(), _mDetection, Decoders, BATCH_SIZE, this);
+
+        _setRunning(false);
+    }
+
+    /**
+     * Batch fragment on destroy callback.
+     */
+    @Override
+    public void onDestroy()
+    {
+        super.onDestroy();
+
+        _mClassifier.cancel();
+        _mDetection.removeListener(this);
+        ModelRegistry.release(_mDetection);
+    }
+
+    /**
+     * Result of the document picker.
+     * @param requestCode: Request code
+     * @param resultCode: Result code
+     * @param data: Intent with the selected documents
+     */
+    @Override
+    public void onActivityResult(int requestCode, int resultCode, Intent data)
+    {
+        if((resultCode != Activity.RESULT_OK) || (data == null) || !_mDetection.getIsModelReady() || _mClassifier.isRunning())
+        {
+            return;
+        }
+
+        if(requestCode == RQ_IMAGES_CODE)
+        {
+            List<Uri> Images = new ArrayList<>();
+
+            ClipData Selection = data.getClipData();
+            if(Selection != null)
+            {
+                for(int i = 0; i < Selection.getItemCount(); i++)
+                {
+                    Images.add(Selection.getItemAt(i).getUri());
+                }
+            }
+            else if(data.getData() != null)
+            {
+                Images.add(data.getData());
+            }
+
+            _prepareBatch();
+            _mClassifier.classify(Images);
+        }
+        else if((requestCode == RQ_FOLDER_CODE) && (data.getData() != null))
+        {
+            _prepareBatch();
+            _mClassifier.classifyFolder(data.getData());
+        }
+    }
+
+    /**
+     * On object detection error.
+     * @param ErrorCode: Object detection error code
+     */
+    @Override
+    public void onDetectionError(@NonNull Long ErrorCode)
+    {
+        _mReport.setText(getString(R.string.batcherror, ErrorCode));
+    }
+
+    /**
+     * On model ready callback.
+     */
+    @Override
+    public void onModelReady()
+    {
+        _setRunning(false);
+    }
+
+    /**
+     * An image was classified.
+     * @param Image: Image URI
+     * @param Probabilities: Predictions for each class
+     */
+    @Override
+    public void onImageClassified(@NonNull Uri Image, @NonNull float[] Probabilities)
+    {
+        _mClassCounts.incrementAndGet(Classification.ArgMax(Probabilities, Probabilities.length));
+    }
+
+    /**
+     * An image couldn't be decoded.
+     * @param Image: Image URI
+     */
+    @Override
+    public void onImageFailed(@NonNull Uri Image)
+    {
+    }
+
+    /**
+     * Progress of the batch.
+     * @param Done: Number of handled images
+     * @param Total: Number of images
+     */
+    @Override
+    public void onBatchProgress(int Done, int Total)
+    {
+        if(!isAdded())
+        {
+            return;
+        }
+
+        _mProgress.setMax(Total);
+        _mProgress.setProgress(Done);
+    }
+
+    /**
+     * The batch has finished.
+     * @param Classified: Number of classified images
+     * @param Failed: Number of images which couldn't be decoded or classified
+     * @param Cancelled: Number of images which weren't handled because the batch was cancelled
+     * @param ImagesPerSecond: Throughput of the pipeline
+     */
+    @Override
+    public void onBatchFinished(int Classified, int Failed, int Cancelled, float ImagesPerSecond)
+    {
+        if(!isAdded())
+        {
+            return;
+        }
+
+        StringBuilder Report = new StringBuilder(getString(R.string.batchreport, Classified, Failed, Cancelled, ImagesPerSecond));
+
+        ArrayList<String> Labels = _mDetection.getLabel();
+        for(int i = 0; i < _mClassCounts.length(); i++)
+        {
+            if((_mClassCounts.get(i) > 0) && (i < Labels.size()))
+            {
+                Report.append('\n').append(getString(R.string.batchclass, Labels.get(i), _mClassCounts.get(i)));
+            }
+        }
+
+        _mReport.setText(Report.toString());
+        _mProgress.setProgress(_mProgress.getMax());
+
+        _setRunning(false);
+    }
+}
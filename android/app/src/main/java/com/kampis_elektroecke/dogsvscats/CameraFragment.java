@@ -2,24 +2,30 @@ package com.kampis_elektroecke.dogsvscats;
 
 import android.app.Fragment;
 import android.graphics.Bitmap;
+import android.graphics.Rect;
+import android.media.Image;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.speech.tts.TextToSpeech;
 import android.util.Size;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.TableLayout;
-import android.widget.TableRow;
 import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.annotation.NonNull;
 
 import com.kampis_elektroecke.dogsvscats.CameraView.CameraView;
+import com.kampis_elektroecke.dogsvscats.ObjectDetection.Classification;
+import com.kampis_elektroecke.dogsvscats.ObjectDetection.IClassification;
+import com.kampis_elektroecke.dogsvscats.ObjectDetection.ModelDescriptor;
+import com.kampis_elektroecke.dogsvscats.ObjectDetection.ModelRegistry;
 import com.kampis_elektroecke.dogsvscats.ObjectDetection.ObjectDetection;
+import com.kampis_elektroecke.dogsvscats.Profiling.Profiler;
+import com.kampis_elektroecke.dogsvscats.Profiling.Tracer;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
 
@@ -43,7 +49,10 @@ public class CameraFragment extends Fragment implements CameraView.ICameraView,
 
     private CameraView _mCameraView;
 
-    private TableLayout _mResultTable;
+    private ResultPresenter _mResults;
+
+    private TextView _mStatistics;
+    private TextView _mLatency;
 
     private ObjectDetection _mDetection;
 
@@ -51,8 +60,34 @@ public class CameraFragment extends Fragment implements CameraView.ICameraView,
 
     private TextToSpeech _mTTS;
 
-    private int _mModelInputHeight;
-    private int _mModelInputWidth;
+    private ModelDescriptor _mDescriptor;
+
+    private int _mLastSpoken = -1;
+
+    private long _mLastLatencyUpdate;
+
+    private final long LATENCY_UPDATE_MS = 500;
+
+    private final int RESULT_ROWS = 5;
+
+    /**
+     * Result callback of the continuous mode. A frame which is dropped by the classification pipeline
+     * isn't counted as processed by the frame statistics.
+     */
+    private final IClassification _mFrameResults = new IClassification()
+    {
+        @Override
+        public void onClassificationResult(Classification Result)
+        {
+            _showResults(Result);
+        }
+
+        @Override
+        public void onClassificationDropped()
+        {
+            _mCameraView.reportDroppedFrame();
+        }
+    };
 
     /**
      *  Small method to get the view and avoid the warning
@@ -68,6 +103,90 @@ public class CameraFragment extends Fragment implements CameraView.ICameraView,
         return view;
     }
 
+    /**
+     * Show the classification results and speak the best label.
+     * @param Result: Classification result
+     */
+    private void _showResults(@NonNull Classification Result)
+    {
+        // The result of an asynchronous classification can arrive after the fragment was detached
+        if(!isAdded())
+        {
+            return;
+        }
+
+        long Start = Profiler.begin(Profiler.Stage.UI_UPDATE);
+
+        if(Result.getTopCount() > 0)
+        {
+            _mResults.show(Result);
+
+            if(_mSettings.getBoolean("UseAudio"))
+            {
+                Locale Language;
+                String Key = _mSettings.getString("CurrentLanguage");
+                if(Key != null)
+                {
+                    Language = new Locale.Builder().setLanguageTag(Key).build();
+                }
+                else
+                {
+                    Language = Locale.forLanguageTag("English");
+                }
+
+                int Best = Result.getBest();
+
+                // Don't repeat the same label for each frame in continuous mode
+                if(!_mSettings.getBoolean("Continuous") || (Best != _mLastSpoken))
+                {
+                    _mTTS.setLanguage(Language);
+                    _mTTS.speak(_mLabels.get(Best), TextToSpeech.QUEUE_FLUSH, null, Long.toString(System.currentTimeMillis()));
+                }
+
+                _mLastSpoken = Best;
+            }
+        }
+
+        Profiler.end(Profiler.Stage.UI_UPDATE, Start);
+
+        _showLatency();
+    }
+
+    /**
+     * Show the latency percentiles of each pipeline stage in the debug overlay.
+     * The overlay is updated at most twice per second.
+     */
+    private void _showLatency()
+    {
+        long Now = SystemClock.uptimeMillis();
+
+        if(_mSettings.getBoolean("LatencyOverlay") && ((Now - _mLastLatencyUpdate) >= LATENCY_UPDATE_MS))
+        {
+            _mLatency.setText(Profiler.getSummary());
+            _mLastLatencyUpdate = Now;
+        }
+    }
+
+    /**
+     * Take the labels and the input geometry of the loaded model.
+     */
+    private void _applyModel()
+    {
+        _mDescriptor = _mDetection.getDescriptor();
+        _mLabels = _mDetection.getLabel();
+
+        _mCameraView.setModel(_mDescriptor);
+        _mResults.setLabels(_mLabels, RESULT_ROWS);
+
+        // The camera sizes depend on the model input
+        _mCameraSizes = null;
+
+        // Show the model input in the settings
+        _mSettings.putString("ModelInputWidth", Integer.toString(_mDescriptor.getInputWidth()));
+        _mSettings.putString("ModelInputHeight", Integer.toString(_mDescriptor.getInputHeight()));
+        _mSettings.putString("ModelInputChannel", Integer.toString(_mDescriptor.getInputChannels()));
+    }
+
     /**
      * Trigger all registered onError callbacks.
      */
@@ -105,23 +224,31 @@ public class CameraFragment extends Fragment implements CameraView.ICameraView,
 
         _mSettings = getArguments();
 
-        _mResultTable = _getView().findViewById(R.id.TableResults);
-
-        _mModelInputWidth = Integer.parseInt(_mSettings.getString("ModelInputWidth"));
-        _mModelInputHeight = Integer.parseInt(_mSettings.getString("ModelInputHeight"));
+        _mResults = new ResultPresenter(_getView().findViewById(R.id.LayoutResults));
+        _mStatistics = _getView().findViewById(R.id.TextStatistics);
+        _mLatency = _getView().findViewById(R.id.TextLatency);
 
         _mCameraView = _getView().findViewById(R.id.CameraView);
         _mCameraView.addListener(this);
 
-        // Load the TensorFlow model
-        _mDetection = new ObjectDetection(getActivity().getAssets(),
+        _mLabels = new ArrayList<>();
+
+        // Get the TensorFlow model. The registry shares the model with the other fragments
+        _mDetection = ModelRegistry.acquire(getActivity(),
                                 "Model.tflite",
                                 "Label.txt",
                                 _mSettings
                                 );
         _mDetection.addListener(this);
 
-        _mLabels = new ArrayList<>();
+        if(_mDetection.getIsModelReady())
+        {
+            _applyModel();
+        }
+        else if(!_mDetection.getError().equals(ObjectDetection.IObjectDetection.NO_ERROR))
+        {
+            onDetectionError(_mDetection.getError());
+        }
     }
 
     /**
@@ -134,8 +261,18 @@ public class CameraFragment extends Fragment implements CameraView.ICameraView,
 
         _mSettings = getArguments();
 
+        Tracer.setEnabled(_mSettings.getBoolean("Tracing"));
+
+        _mCameraView.setUseYUV(_mSettings.getBoolean("UseYUV"));
         _mCameraView.startCamera(Size.parseSize(_mSettings.getString("CurrentResolution")));
-        _mCameraView.setOverlaySize(_mModelInputWidth, _mModelInputHeight);
+        _mCameraView.setContinuousMode(_mSettings.getBoolean("Continuous"));
+        _mCameraView.setZeroShutterLag(_mSettings.getBoolean("ZeroShutterLag"));
+        _mStatistics.setVisibility(_mSettings.getBoolean("Continuous") ? View.VISIBLE : View.GONE);
+        _mLatency.setVisibility(_mSettings.getBoolean("LatencyOverlay") ? View.VISIBLE : View.GONE);
+        if(_mDescriptor != null)
+        {
+            _mCameraView.setModel(_mDescriptor);
+        }
 
         _mTTS = new TextToSpeech(getActivity().getApplicationContext(), (int Status) ->
         {
@@ -171,6 +308,9 @@ public class CameraFragment extends Fragment implements CameraView.ICameraView,
     {
         super.onDestroy();
 
+        _mDetection.removeListener(this);
+        ModelRegistry.release(_mDetection);
+
         if(_mTTS != null)
         {
             _mTTS.stop();
@@ -208,8 +348,8 @@ public class CameraFragment extends Fragment implements CameraView.ICameraView,
     @Override
     public void onModelReady()
     {
-        // Get the label
-        _mLabels = _mDetection.getLabel();
+        // Get the label and the input geometry
+        _applyModel();
 
         Toast.makeText(getActivity().getApplicationContext(), "Model loaded", Toast.LENGTH_LONG).show();
     }
@@ -221,46 +361,51 @@ public class CameraFragment extends Fragment implements CameraView.ICameraView,
     @Override
     public void onBitmapAvailable(@NonNull Bitmap Image)
     {
-        List<Float> Results = _mDetection.Classify(Image);
-
-        if(Results.size() > 0)
-        {
-            // Clear the table
-           _mResultTable.removeAllViews();
-
-            for(int i = 0; i < Results.size(); i++)
-            {
-                // Create a new table row
-                TableRow tr = new TableRow(getContext());
-
-                // Create a new TextView
-                TextView Text = new TextView(getContext());
-                Text.setText(getString(R.string.resultlabel, _mLabels.get(i), Results.get(i)));
+        _mDetection.classifyAsync(Image, this::_showResults);
+    }
 
-                // Add the TextView to the table row
-                tr.addView(Text);
+    /**
+     * On frame available callback.
+     * @param Frame: YUV_420_888 camera image
+     * @param ROI: Region of interest in image coordinates
+     * @return true if the frame was classified
+     */
+    @Override
+    public boolean onFrameAvailable(@NonNull Image Frame, @NonNull Rect ROI)
+    {
+        return _mDetection.classifyAsync(Frame, ROI, _mFrameResults);
+    }
 
-                // Add the table row to the table
-                _mResultTable.addView(tr, new TableLayout.LayoutParams(TableLayout.LayoutParams.MATCH_PARENT, TableLayout.LayoutParams.WRAP_CONTENT));
-            }
+    /**
+     * On frame buffered callback.
+     * @param Frame: YUV_420_888 camera image
+     * @param ROI: Region of interest in image coordinates
+     */
+    @Override
+    public void onFrameBuffered(@NonNull Image Frame, @NonNull Rect ROI)
+    {
+        _mDetection.bufferFrame(Frame, ROI);
+    }
 
-            if(_mSettings.getBoolean("UseAudio"))
-            {
-                Locale Language;
-                String Key = _mSettings.getString("CurrentLanguage");
-                if(Key != null)
-                {
-                    Language = new Locale.Builder().setLanguageTag(Key).build();
-                }
-                else
-                {
-                    Language = Locale.forLanguageTag("English");
-                }
+    /**
+     * On shutter callback.
+     * @return true if a buffered frame is classified
+     */
+    @Override
+    public boolean onShutter()
+    {
+        return _mDetection.classifyLatest(this::_showResults);
+    }
 
-                _mTTS.setLanguage(Language);
-                _mTTS.speak(_mLabels.get(Results.indexOf(Collections.max(Results))), TextToSpeech.QUEUE_FLUSH, null, Long.toString(System.currentTimeMillis()));
-            }
-        }
+    /**
+     * On frame statistics callback.
+     * @param FramesPerSecond: Processed frames per second
+     * @param DroppedFrames: Number of dropped frames
+     */
+    @Override
+    public void onFrameStatistics(float FramesPerSecond, long DroppedFrames)
+    {
+        _mStatistics.setText(getString(R.string.framestatistics, FramesPerSecond, DroppedFrames, _mDetection.getCacheHits()));
     }
 
     /**
@@ -283,6 +428,7 @@ public class CameraFragment extends Fragment implements CameraView.ICameraView,
 
     /**
      * Get the available sizes for the camera device according to the model input sizes.
+     * All sizes are returned as long as the model isn't loaded.
      * @return Array with camera sizes
      */
     public ArrayList<String> getCameraSizes()
@@ -291,9 +437,12 @@ public class CameraFragment extends Fragment implements CameraView.ICameraView,
         {
             _mCameraSizes = new ArrayList<>();
 
+            int Width = (_mDescriptor != null) ? _mDescriptor.getInputWidth() : 0;
+            int Height = (_mDescriptor != null) ? _mDescriptor.getInputHeight() : 0;
+
             for(Size Resolution : _mCameraView.getCameraSizes())
             {
-                if((_mModelInputWidth <= Resolution.getWidth()) && (_mModelInputHeight <= Resolution.getHeight()))
+                if((Width <= Resolution.getWidth()) && (Height <= Resolution.getHeight()))
                 {
                     _mCameraSizes.add(Resolution.toString());
                 }
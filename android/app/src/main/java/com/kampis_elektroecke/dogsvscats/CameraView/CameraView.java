@@ -2,7 +2,6 @@ package com.kampis_elektroecke.dogsvscats.CameraView;
 
 import android.content.Context;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.ImageFormat;
@@ -16,10 +15,13 @@ import android.hardware.camera2.CameraCharacteristics;
 import android.hardware.camera2.CameraDevice;
 import android.hardware.camera2.CameraManager;
 import android.hardware.camera2.CaptureRequest;
+import android.hardware.camera2.TotalCaptureResult;
 import android.hardware.camera2.params.StreamConfigurationMap;
 import android.media.Image;
 import android.media.ImageReader;
 import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
 import android.util.AttributeSet;
 import android.util.DisplayMetrics;
 import android.util.Log;
@@ -34,11 +36,15 @@ import android.widget.LinearLayout;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import com.kampis_elektroecke.dogsvscats.ObjectDetection.ModelDescriptor;
+import com.kampis_elektroecke.dogsvscats.Profiling.Profiler;
+import com.kampis_elektroecke.dogsvscats.Profiling.Tracer;
 import com.kampis_elektroecke.dogsvscats.R;
 
-import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
 
 public class CameraView extends LinearLayout
 {
@@ -50,18 +56,66 @@ public class CameraView extends LinearLayout
         Long NO_CAMERA_FOUND = 4L;
         Long WRONG_IMAGE_FORMAT = 8L;
 
+        /**
+         * A camera error has occurred. Called with the listener executor.
+         * @param ErrorCode: Camera error code
+         */
         void onCameraError(Long ErrorCode);
 
+        /**
+         * A still capture is available. Called on the image reader thread.
+         * @param Image: Region of interest of the capture. The bitmap is reused for the next capture and only valid until the callback returns
+         */
         void onBitmapAvailable(Bitmap Image);
+
+        /**
+         * A YUV_420_888 frame is available. Called on the image reader thread. The image is closed after the callback returns.
+         * @param Frame: Camera image
+         * @param ROI: Region of interest in image coordinates
+         * @return true if the frame was processed, false if it was dropped
+         */
+        boolean onFrameAvailable(Image Frame, Rect ROI);
+
+        /**
+         * A preview frame for the buffer of the zero shutter lag mode. Called on the image reader thread. The image is closed after the callback returns.
+         * @param Frame: YUV_420_888 camera image
+         * @param ROI: Region of interest in image coordinates
+         */
+        void onFrameBuffered(Image Frame, Rect ROI);
+
+        /**
+         * The preview was tapped in zero shutter lag mode. Called on the main thread.
+         * @return true if the tap was handled with a buffered frame, false to capture a new image
+         */
+        boolean onShutter();
+
+        /**
+         * Frame statistics of the continuous mode. Called once per second with the listener executor.
+         * @param FramesPerSecond: Processed frames per second
+         * @param DroppedFrames: Number of dropped frames since the start of the continuous mode
+         */
+        void onFrameStatistics(float FramesPerSecond, long DroppedFrames);
     }
 
     private final int STROKE_WIDTH = 10;
 
-    private List<ICameraView> _mInterfaceListener = new ArrayList<>();
+    private List<ICameraView> _mInterfaceListener = new CopyOnWriteArrayList<>();
+
+    private HandlerThread _mCameraThread;
+    private HandlerThread _mReaderThread;
+
+    private Handler _mCameraHandler;
+    private Handler _mReaderHandler;
+
+    private Executor _mListenerExecutor;
 
     private String _mCameraID;
 
     private Size[] _mImageSizes;
+    private Size[] _mAnalysisSizes;
+
+    private volatile Size _mPreviewSize;
+    private volatile Size _mAnalysisSize;
 
     private CameraDevice _mCamera;
 
@@ -71,10 +125,26 @@ public class CameraView extends LinearLayout
 
     private CaptureRequest.Builder _mCapturePreviewBuilder;
     private CaptureRequest.Builder _mCaptureBuilder;
+    private CaptureRequest.Builder _mAnalysisBuilder;
 
     private ImageReader _mImageReader;
+    private ImageReader _mAnalysisReader;
+    private ImageReader _mRetiredReader;
 
     private Rect _mROI;
+    private volatile Rect _mCropRect;
+    private final Rect _mFrameCropRect = new Rect();
+
+    private volatile boolean _mUseYUV;
+    private volatile boolean _mContinuous;
+    private volatile boolean _mZeroShutterLag;
+
+    private final FrameStatistics _mStatistics = new FrameStatistics();
+
+    private final JpegRegionDecoder _mRegionDecoder = new JpegRegionDecoder();
+
+    private volatile long _mCaptureStart;
+    private volatile boolean _mCapturePending;
 
     private FrameLayout _mImageFrame;
 
@@ -84,8 +154,19 @@ public class CameraView extends LinearLayout
     private SurfaceHolder _mOverlayHolder;
     private SurfaceHolder _mCameraHolder;
 
-    private int _mOverlayWidth;
-    private int _mOverlayHeight;
+    private volatile int _mOverlayWidth;
+    private volatile int _mOverlayHeight;
+
+    /**
+     * Input size of the model. The analysis stream is scaled down as long as the region of interest keeps this size.
+     */
+    private volatile int _mModelWidth;
+    private volatile int _mModelHeight;
+
+    /**
+     * The overlay follows the input size of the model, because no overlay size was set.
+     */
+    private boolean _mIsOverlayFromModel = true;
 
     /**
      * Trigger all registered onCameraError callbacks.
@@ -93,10 +174,13 @@ public class CameraView extends LinearLayout
      */
     private void _notifyErrorListener(@NonNull Long ErrorCode)
     {
-        for(ICameraView Listener: _mInterfaceListener)
+        _mListenerExecutor.execute(() ->
         {
-            Listener.onCameraError(ErrorCode);
-        }
+            for(ICameraView Listener: _mInterfaceListener)
+            {
+                Listener.onCameraError(ErrorCode);
+            }
+        });
     }
 
     /**
@@ -111,6 +195,291 @@ public class CameraView extends LinearLayout
         }
     }
 
+    /**
+     * Trigger all registered onFrameAvailable callbacks.
+     * @param Frame: Camera image
+     * @return true if at least one listener has processed the frame
+     */
+    private boolean _notifyOnFrameAvailable(@NonNull Image Frame)
+    {
+        boolean Consumed = false;
+        Rect ROI = _getFrameCropRect(Frame);
+
+        for(ICameraView Listener: _mInterfaceListener)
+        {
+            Consumed |= Listener.onFrameAvailable(Frame, ROI);
+        }
+
+        return Consumed;
+    }
+
+    /**
+     * Trigger all registered onFrameBuffered callbacks.
+     * @param Frame: Camera image
+     */
+    private void _notifyOnFrameBuffered(@NonNull Image Frame)
+    {
+        Rect ROI = _getFrameCropRect(Frame);
+
+        for(ICameraView Listener: _mInterfaceListener)
+        {
+            Listener.onFrameBuffered(Frame, ROI);
+        }
+    }
+
+    /**
+     * Trigger all registered onShutter callbacks.
+     * @return true if at least one listener has handled the tap
+     */
+    private boolean _notifyOnShutter()
+    {
+        boolean Handled = false;
+
+        for(ICameraView Listener: _mInterfaceListener)
+        {
+            Handled |= Listener.onShutter();
+        }
+
+        return Handled;
+    }
+
+    /**
+     * Trigger all registered onFrameStatistics callbacks.
+     */
+    private void _notifyOnFrameStatistics()
+    {
+        final float FramesPerSecond = _mStatistics.getFramesPerSecond();
+        final long DroppedFrames = _mStatistics.getDroppedFrames();
+
+        _mListenerExecutor.execute(() ->
+        {
+            for(ICameraView Listener: _mInterfaceListener)
+            {
+                Listener.onFrameStatistics(FramesPerSecond, DroppedFrames);
+            }
+        });
+    }
+
+    /**
+     * Start the repeating request for the preview. The analysis reader is attached in continuous mode
+     * and in zero shutter lag mode. Must be called on the camera thread.
+     */
+    private void _startRepeatingRequest()
+    {
+        if((_mActiveSession == null) || (_mCapturePreviewBuilder == null))
+        {
+            return;
+        }
+
+        try
+        {
+            if(_mContinuous || _mZeroShutterLag)
+            {
+                _mCapturePreviewBuilder.addTarget(_mAnalysisReader.getSurface());
+            }
+            else
+            {
+                _mCapturePreviewBuilder.removeTarget(_mAnalysisReader.getSurface());
+            }
+
+            _mStatistics.reset();
+            _mActiveSession.setRepeatingRequest(_mCapturePreviewBuilder.build(), _previewCaptureCallback, _mCameraHandler);
+        }
+        catch(CameraAccessException | IllegalStateException e)
+        {
+            Log.e("CameraView", "Repeating request exception: " + e);
+
+            _notifyErrorListener(ICameraView.CAPTURE_ERROR);
+        }
+    }
+
+    /**
+     * Map the region of interest from the preview to an analysis frame.
+     * The frame size is used instead of the current analysis size, because frames of the previous size can
+     * still arrive while the session is reconfigured. Must be called on the image reader thread.
+     * @param Frame: Analysis frame
+     * @return Region of interest in frame coordinates
+     */
+    private Rect _getFrameCropRect(@NonNull Image Frame)
+    {
+        Rect CropRect = _mCropRect;
+        Size Preview = _mPreviewSize;
+
+        if((CropRect == null) || (Preview == null))
+        {
+            _mFrameCropRect.set(0, 0, Frame.getWidth(), Frame.getHeight());
+        }
+        else
+        {
+            _mFrameCropRect.set(CropRect.left * Frame.getWidth() / Preview.getWidth(),
+                    CropRect.top * Frame.getHeight() / Preview.getHeight(),
+                    CropRect.right * Frame.getWidth() / Preview.getWidth(),
+                    CropRect.bottom * Frame.getHeight() / Preview.getHeight()
+            );
+        }
+
+        return _mFrameCropRect;
+    }
+
+    /**
+     * Choose the smallest analysis stream with the aspect ratio of the preview, in which the region of interest
+     * still has at least the model resolution. The region keeps its size in preview pixels, so the classified
+     * part of the scene doesn't depend on the analysis stream.
+     * @param Sizes: Supported YUV_420_888 output sizes
+     * @param Preview: Preview size
+     * @param RegionWidth: Width of the region of interest in the preview
+     * @param RegionHeight: Height of the region of interest in the preview
+     * @param ModelWidth: Width of the model input
+     * @param ModelHeight: Height of the model input
+     * @return Analysis size or the preview size if no size fits
+     */
+    public static Size chooseAnalysisSize(@Nullable Size[] Sizes, @NonNull Size Preview, int RegionWidth, int RegionHeight,
+                                          int ModelWidth, int ModelHeight)
+    {
+        Size Analysis = null;
+
+        if((Sizes == null) || (RegionWidth <= 0) || (RegionHeight <= 0))
+        {
+            return Preview;
+        }
+
+        for(Size Candidate : Sizes)
+        {
+            int Width = Candidate.getWidth();
+            int Height = Candidate.getHeight();
+
+            // Keep the field of view of the preview, otherwise the region doesn't show the same part of the scene
+            if(((long)Width * Preview.getHeight()) != ((long)Height * Preview.getWidth()))
+            {
+                continue;
+            }
+
+            // Size of the region in the analysis frame
+            if((((long)RegionWidth * Width) < ((long)ModelWidth * Preview.getWidth())) ||
+               (((long)RegionHeight * Height) < ((long)ModelHeight * Preview.getHeight())))
+            {
+                continue;
+            }
+
+            if((Analysis == null) || (((long)Width * Height) < ((long)Analysis.getWidth() * Analysis.getHeight())))
+            {
+                Analysis = Candidate;
+            }
+        }
+
+        return (Analysis != null) ? Analysis : Preview;
+    }
+
+    /**
+     * Choose the analysis size for the current region of interest and model and log if the stream is scaled down.
+     * @param Preview: Preview size
+     * @return Analysis size
+     */
+    private Size _chooseAnalysisSize(@NonNull Size Preview)
+    {
+        // Without a model the region of interest has to keep its size
+        int ModelWidth = (_mModelWidth > 0) ? _mModelWidth : _mOverlayWidth;
+        int ModelHeight = (_mModelHeight > 0) ? _mModelHeight : _mOverlayHeight;
+
+        Size Analysis = chooseAnalysisSize(_mAnalysisSizes, Preview, _mOverlayWidth, _mOverlayHeight, ModelWidth, ModelHeight);
+        Log.d("CameraView", "Analysis size " + Analysis + " for preview " + Preview + ", region " + _mOverlayWidth + "x" + _mOverlayHeight +
+                ", model " + ModelWidth + "x" + ModelHeight + ((Analysis.getWidth() < Preview.getWidth()) ? " (downscaled)" : " (preview resolution)"));
+
+        return Analysis;
+    }
+
+    /**
+     * Choose the analysis size for the current preview and overlay size and reconfigure
+     * the capture session if the size has changed.
+     */
+    private void _updateAnalysisSize()
+    {
+        Size Preview = _mPreviewSize;
+        if(Preview == null)
+        {
+            return;
+        }
+
+        Size Analysis = _chooseAnalysisSize(Preview);
+        if(!Analysis.equals(_mAnalysisSize))
+        {
+            _mAnalysisSize = Analysis;
+
+            if(_mCameraThread != null)
+            {
+                _mCameraHandler.post(this::_reconfigureSession);
+            }
+        }
+    }
+
+    /**
+     * Create the analysis reader with the current analysis size. The previous reader is closed
+     * after the new session is configured. Must be called on the camera thread.
+     */
+    private void _updateAnalysisReader()
+    {
+        Size Analysis = _mAnalysisSize;
+
+        if((_mAnalysisReader != null) && (_mAnalysisReader.getWidth() == Analysis.getWidth()) &&
+           (_mAnalysisReader.getHeight() == Analysis.getHeight()))
+        {
+            return;
+        }
+
+        if(_mAnalysisReader != null)
+        {
+            _closeReader(_mRetiredReader);
+            _mRetiredReader = _mAnalysisReader;
+        }
+
+        _mAnalysisReader = ImageReader.newInstance(Analysis.getWidth(), Analysis.getHeight(), ImageFormat.YUV_420_888, 2);
+        _mAnalysisReader.setOnImageAvailableListener(_onFrameAvailable, _mReaderHandler);
+    }
+
+    /**
+     * Close an image reader on the image reader thread.
+     * @param Reader: Image reader or null
+     */
+    private void _closeReader(@Nullable final ImageReader Reader)
+    {
+        if(Reader != null)
+        {
+            _mReaderHandler.post(Reader::close);
+        }
+    }
+
+    /**
+     * Replace the capture session with a session for the current analysis size. Must be called on the camera thread.
+     */
+    private void _reconfigureSession()
+    {
+        // The session is created with the current size when the camera is opened
+        if(_mCamera == null)
+        {
+            return;
+        }
+
+        if(_mActiveSession != null)
+        {
+            _mActiveSession.close();
+            _mActiveSession = null;
+        }
+
+        _createCaptureSession();
+    }
+
+    /**
+     * Record the time between the tap and the arrival of the captured image.
+     */
+    private void _endCapture()
+    {
+        if(_mCapturePending)
+        {
+            Profiler.end(Profiler.Stage.CAPTURE, _mCaptureStart);
+            _mCapturePending = false;
+        }
+    }
+
     /**
      * Try to find a device camera.
      */
@@ -137,6 +506,7 @@ public class CameraView extends LinearLayout
                     if(StreamConfigs != null)
                     {
                         _mImageSizes = StreamConfigs.getOutputSizes(SurfaceHolder.class);
+                        _mAnalysisSizes = StreamConfigs.getOutputSizes(ImageFormat.YUV_420_888);
                     }
 
                     // Abort if one camera was found
@@ -153,15 +523,96 @@ public class CameraView extends LinearLayout
     }
 
     /**
-     * Create a new capture session.
+     * Start the camera thread and the image reader thread.
+     */
+    private void _startThreads()
+    {
+        if(_mCameraThread == null)
+        {
+            _mCameraThread = new HandlerThread("Camera");
+            _mCameraThread.start();
+            _mCameraHandler = new Handler(_mCameraThread.getLooper());
+
+            _mReaderThread = new HandlerThread("ImageReader");
+            _mReaderThread.start();
+            _mReaderHandler = new Handler(_mReaderThread.getLooper());
+        }
+    }
+
+    /**
+     * Stop the threads after all posted tasks, e.g. closing the camera, have been executed.
+     */
+    private void _stopThreads()
+    {
+        if(_mCameraThread != null)
+        {
+            // The image reader thread is stopped by the camera thread, because closing the camera
+            // hands the analysis reader over to the image reader thread
+            _mCameraHandler.post(_mReaderThread::quitSafely);
+            _mCameraThread.quitSafely();
+
+            // The handlers are kept, tasks which are posted after the stop are dropped
+            _mCameraThread = null;
+            _mReaderThread = null;
+        }
+    }
+
+    /**
+     * Close the session and the camera on the camera thread and the image readers on the image reader thread,
+     * so that no callback runs with a closed object.
+     */
+    private void _closeCamera()
+    {
+        final ImageReader ImageReader = _mImageReader;
+
+        _mCameraHandler.post(() ->
+        {
+            // Close the current session
+            if(_mActiveSession != null)
+            {
+                _mActiveSession.close();
+                _mActiveSession = null;
+            }
+
+            // Close the camera
+            if(_mCamera != null)
+            {
+                _mCamera.close();
+                _mCamera = null;
+            }
+
+            // The analysis readers are owned by the camera thread
+            _closeReader(_mAnalysisReader);
+            _closeReader(_mRetiredReader);
+            _mAnalysisReader = null;
+            _mRetiredReader = null;
+        });
+
+        _mReaderHandler.post(() ->
+        {
+            // Release the image readers
+            if(ImageReader != null)
+            {
+                ImageReader.close();
+            }
+
+            _mRegionDecoder.release();
+        });
+    }
+
+    /**
+     * Create a new capture session. Must be called on the camera thread.
      */
     private void _createCaptureSession()
     {
+        _updateAnalysisReader();
+
         List<Surface> ImageOutputs = new ArrayList<>();
 
         // Image outputs for the camera
         ImageOutputs.add(_mCameraHolder.getSurface());
         ImageOutputs.add(_mImageReader.getSurface());
+        ImageOutputs.add(_mAnalysisReader.getSurface());
 
         try
         {
@@ -170,9 +621,11 @@ public class CameraView extends LinearLayout
             _mCapturePreviewBuilder.addTarget(_mCameraHolder.getSurface());
             _mCaptureBuilder = _mCamera.createCaptureRequest(CameraDevice.TEMPLATE_STILL_CAPTURE);
             _mCaptureBuilder.addTarget(_mImageReader.getSurface());
+            _mAnalysisBuilder = _mCamera.createCaptureRequest(CameraDevice.TEMPLATE_STILL_CAPTURE);
+            _mAnalysisBuilder.addTarget(_mAnalysisReader.getSurface());
 
             // Create the camera capture session
-            _mCamera.createCaptureSession(ImageOutputs, _captureSessionCallback, new Handler());
+            _mCamera.createCaptureSession(ImageOutputs, _captureSessionCallback, _mCameraHandler);
         }
         catch(Exception e)
         {
@@ -207,6 +660,13 @@ public class CameraView extends LinearLayout
                     Top + (2 * STROKE_WIDTH) + OverlayHeight
             );
 
+            // Region inside the stroke, which is used for the classification
+            _mCropRect = new Rect(_mROI.left + STROKE_WIDTH,
+                    _mROI.top + STROKE_WIDTH,
+                    _mROI.right - STROKE_WIDTH,
+                    _mROI.bottom - STROKE_WIDTH
+            );
+
             DrawingCanvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
             DrawingCanvas.drawRect(_mROI, paint);
 
@@ -223,6 +683,10 @@ public class CameraView extends LinearLayout
     {
         _mCameraManager = context.getSystemService(CameraManager.class);
 
+        // Deliver the status callbacks on the main thread by default
+        Handler MainHandler = new Handler(Looper.getMainLooper());
+        _mListenerExecutor = MainHandler::post;
+
         View _mRoot = inflate(context, R.layout.view_camera, this);
 
         _mCameraPreview = _mRoot.findViewById(R.id.CameraPreview);
@@ -279,21 +743,61 @@ public class CameraView extends LinearLayout
     }
 
     /**
-     * Set the width and the height of the overlay.
+     * Set the width and the height of the overlay. The region of interest keeps this size in preview pixels,
+     * so a region which is larger than the model input allows a smaller analysis stream.
      * @param Width: Width of the overlay
      * @param Height: Height of the overlay
      */
     public void setOverlaySize(int Width, int Height)
+    {
+        _mIsOverlayFromModel = false;
+        _setOverlaySize(Width, Height);
+    }
+
+    /**
+     * Update the overlay size, the analysis stream and redraw the overlay.
+     * @param Width: Width of the overlay
+     * @param Height: Height of the overlay
+     */
+    private void _setOverlaySize(int Width, int Height)
     {
         _mOverlayWidth = Width;
         _mOverlayHeight = Height;
 
+        _updateAnalysisSize();
+
         if(_mOverlayHolder != null)
         {
             _OverlayCallbacks.surfaceCreated(_mOverlayHolder);
         }
     }
 
+    /**
+     * Size the analysis stream for the input of a model. Without an overlay size the region of interest
+     * gets the input size of the model. The overlay is only redrawn and the session is only reconfigured
+     * if the input size changes.
+     * @param Descriptor: Geometry of the model
+     */
+    public void setModel(@NonNull ModelDescriptor Descriptor)
+    {
+        if((Descriptor.getInputWidth() == _mModelWidth) && (Descriptor.getInputHeight() == _mModelHeight))
+        {
+            return;
+        }
+
+        _mModelWidth = Descriptor.getInputWidth();
+        _mModelHeight = Descriptor.getInputHeight();
+
+        if(_mIsOverlayFromModel)
+        {
+            _setOverlaySize(_mModelWidth, _mModelHeight);
+        }
+        else
+        {
+            _updateAnalysisSize();
+        }
+    }
+
     /**
      * Set the visibility of the camera view.
      * @param Visibility: Visibility
@@ -304,6 +808,90 @@ public class CameraView extends LinearLayout
         _mCameraOverlay.setVisibility(Visibility);
     }
 
+    /**
+     * Select the image path for a capture.
+     * @param UseYUV: true to deliver YUV_420_888 frames with onFrameAvailable instead of JPEG decoded bitmaps
+     */
+    public void setUseYUV(boolean UseYUV)
+    {
+        _mUseYUV = UseYUV;
+    }
+
+    /**
+     * Enable or disable the continuous classification mode.
+     * In continuous mode each preview frame is also delivered to the analysis reader and handed to
+     * onFrameAvailable. Frames which arrive while a listener is still busy are dropped, only the latest frame is used.
+     * @param Continuous: true to enable the continuous mode
+     */
+    public void setContinuousMode(boolean Continuous)
+    {
+        if(_mContinuous != Continuous)
+        {
+            _mContinuous = Continuous;
+
+            if(_mCameraHandler != null)
+            {
+                _mCameraHandler.post(this::_startRepeatingRequest);
+            }
+        }
+    }
+
+    /**
+     * Enable or disable the zero shutter lag mode.
+     * In zero shutter lag mode the preview frames are also delivered to the analysis reader and handed to onFrameBuffered,
+     * so a tap can be handled with a frame which is already in memory instead of a new capture. The frames are only
+     * buffered while the continuous mode is disabled, because the continuous mode already shows the current result.
+     * @param ZeroShutterLag: true to enable the zero shutter lag mode
+     */
+    public void setZeroShutterLag(boolean ZeroShutterLag)
+    {
+        if(_mZeroShutterLag != ZeroShutterLag)
+        {
+            _mZeroShutterLag = ZeroShutterLag;
+
+            if(_mCameraHandler != null)
+            {
+                _mCameraHandler.post(this::_startRepeatingRequest);
+            }
+        }
+    }
+
+    /**
+     * Set the executor for the onCameraError and onFrameStatistics callbacks.
+     * The frame callbacks are always called on the image reader thread, because the images are only valid during the callback.
+     * @param ListenerExecutor: Executor for the listener callbacks. The main thread is used by default
+     */
+    public void setListenerExecutor(@NonNull Executor ListenerExecutor)
+    {
+        _mListenerExecutor = ListenerExecutor;
+    }
+
+    /**
+     * Get the processed frames per second of the continuous mode.
+     * @return Frames per second
+     */
+    public float getFramesPerSecond()
+    {
+        return _mStatistics.getFramesPerSecond();
+    }
+
+    /**
+     * Get the number of dropped frames of the continuous mode.
+     * @return Dropped frame count
+     */
+    public long getDroppedFrames()
+    {
+        return _mStatistics.getDroppedFrames();
+    }
+
+    /**
+     * Report a frame which was accepted by onFrameAvailable but dropped later, e.g. by a pipelined classification.
+     */
+    public void reportDroppedFrame()
+    {
+        _mStatistics.onFrameDropped();
+    }
+
     /**
      * Get the available sizes for the camera device.
      * @return Array with camera sizes
@@ -319,6 +907,8 @@ public class CameraView extends LinearLayout
      */
     public void startCamera(Size ImageSize)
     {
+        _startThreads();
+
         _mCameraHolder = _mCameraPreview.getHolder();
         _mCameraHolder.addCallback(_CameraViewCallbacks);
 
@@ -345,7 +935,12 @@ public class CameraView extends LinearLayout
             }
 
             _mImageReader = ImageReader.newInstance(ImageSize.getWidth(), ImageSize.getHeight(), ImageFormat.JPEG, 2);
-            _mImageReader.setOnImageAvailableListener(_onImageAvailable, null);
+            _mImageReader.setOnImageAvailableListener(_onImageAvailable, _mReaderHandler);
+
+            // The analysis reader is created with the session, because its size depends on the model
+            _mPreviewSize = ImageSize;
+            _mAnalysisSize = _chooseAnalysisSize(ImageSize);
+            _drawOverlay(_mOverlayWidth, _mOverlayHeight);
 
             _mCameraPreview.setOnClickListener(_onClick);
         }
@@ -361,25 +956,19 @@ public class CameraView extends LinearLayout
     {
         _mCameraPreview.setVisibility(View.GONE);
 
-        if(_mCamera != null)
+        // Remove the surface holder callbacks
+        if(_mCameraHolder != null)
         {
-            // Close the current session
-            if(_mActiveSession != null)
-            {
-                _mActiveSession.close();
-                _mActiveSession = null;
-            }
-
-            // Close the camera
-            _mCamera.close();
-            _mCamera = null;
+            _mCameraHolder.removeCallback(_CameraViewCallbacks);
+        }
 
-            // Remove the surface holder callbacks
-            if(_mCameraHolder != null)
-            {
-                _mCameraHolder.removeCallback(_CameraViewCallbacks);
-            }
+        if(_mCameraThread != null)
+        {
+            _closeCamera();
+            _stopThreads();
         }
+
+        _mImageReader = null;
     }
 
     /**
@@ -390,7 +979,7 @@ public class CameraView extends LinearLayout
         @Override
         public void surfaceCreated(@NonNull SurfaceHolder surfaceHolder)
         {
-            _drawOverlay(_mOverlayWidth, _mOverlayWidth);
+            _drawOverlay(_mOverlayWidth, _mOverlayHeight);
             Log.d("CameraView", "Overlay surfaceCreated");
         }
 
@@ -418,7 +1007,7 @@ public class CameraView extends LinearLayout
             // Open the camera when the surface is created
             try
             {
-                _mCameraManager.openCamera(_mCameraID, _cameraDeviceCallbacks, null);
+                _mCameraManager.openCamera(_mCameraID, _cameraDeviceCallbacks, _mCameraHandler);
             }
             catch(SecurityException | CameraAccessException e)
             {
@@ -484,19 +1073,13 @@ public class CameraView extends LinearLayout
         @Override
         public void onConfigured(@NonNull CameraCaptureSession cameraCaptureSession)
         {
-            try
-            {
-                // Create a repeating capture session for the camera preview
-                cameraCaptureSession.setRepeatingRequest(_mCapturePreviewBuilder.build(), null, null);
-
-                _mActiveSession = cameraCaptureSession;
-            }
-            catch(CameraAccessException e)
-            {
-                Log.e("CameraView", "Camera access exception: " + e);
+            // Create a repeating capture session for the camera preview
+            _mActiveSession = cameraCaptureSession;
+            _startRepeatingRequest();
 
-                _notifyErrorListener(ICameraView.CAPTURE_ERROR);
-            }
+            // The reader of the previous session is no longer used
+            _closeReader(_mRetiredReader);
+            _mRetiredReader = null;
         }
 
         @Override
@@ -508,6 +1091,21 @@ public class CameraView extends LinearLayout
         }
     };
 
+    /**
+     * Capture callbacks for the repeating preview request.
+     */
+    private final CameraCaptureSession.CaptureCallback _previewCaptureCallback = new CameraCaptureSession.CaptureCallback()
+    {
+        @Override
+        public void onCaptureCompleted(@NonNull CameraCaptureSession session, @NonNull CaptureRequest request, @NonNull TotalCaptureResult result)
+        {
+            if(_mContinuous)
+            {
+                _mStatistics.onFrameProduced();
+            }
+        }
+    };
+
     /**
      * On click callback for the overlay.
      */
@@ -516,13 +1114,51 @@ public class CameraView extends LinearLayout
         @Override
         public void onClick(@NonNull View v)
         {
+            if(_mCameraHandler == null)
+            {
+                return;
+            }
+
+            // Use a buffered frame if possible. The capture is only needed if the listeners have no recent frame
+            if(_mZeroShutterLag && !_mContinuous && _notifyOnShutter())
+            {
+                return;
+            }
+
+            _mCaptureStart = Profiler.begin(Profiler.Stage.CAPTURE);
+            _mCapturePending = true;
+            _mCameraHandler.post(_captureTask);
+        }
+    };
+
+    /**
+     * Send the capture request on the camera thread.
+     */
+    private final Runnable _captureTask = new Runnable()
+    {
+        @Override
+        public void run()
+        {
+            if(_mActiveSession == null)
+            {
+                return;
+            }
+
+            // The analysis reader already receives the preview frames, the next frame is used as capture
+            if(_mUseYUV && _mZeroShutterLag)
+            {
+                return;
+            }
+
             try
             {
-                _mActiveSession.capture(_mCaptureBuilder.build(), null, new Handler());
+                CaptureRequest.Builder Builder = _mUseYUV ? _mAnalysisBuilder : _mCaptureBuilder;
+
+                _mActiveSession.capture(Builder.build(), null, _mCameraHandler);
             }
-            catch(CameraAccessException e)
+            catch(CameraAccessException | IllegalStateException e)
             {
-                Log.e("CameraView", "onClick error: " + e);
+                Log.e("CameraView", "Capture error: " + e);
 
                 _notifyErrorListener(ICameraView.CAPTURE_ERROR);
             }
@@ -537,25 +1173,75 @@ public class CameraView extends LinearLayout
         @Override
         public void onImageAvailable(@NonNull ImageReader imageReader)
         {
+            Tracer.beginSection("AcquireImage");
             Image image = imageReader.acquireLatestImage();
+            Tracer.endSection();
 
             if(image != null)
             {
-                byte[] imageBytes;
+                _endCapture();
 
-                ByteBuffer buffer = image.getPlanes()[0].getBuffer();
-                imageBytes = new byte[buffer.remaining()];
-                buffer.get(imageBytes);
-                final Bitmap bmp = BitmapFactory.decodeByteArray(imageBytes,0, imageBytes.length);
+                // Decode only the region of interest with the largest sample size for the model input
+                long Start = Profiler.begin(Profiler.Stage.DECODE);
+                Bitmap ROI = _mRegionDecoder.decode(image.getPlanes()[0].getBuffer(), _mCropRect, _mOverlayWidth, _mOverlayHeight);
                 image.close();
+                Profiler.end(Profiler.Stage.DECODE, Start);
 
-                Bitmap ROI = Bitmap.createBitmap(bmp, _mROI.left + STROKE_WIDTH,
-                        _mROI.top + STROKE_WIDTH,
-                        _mROI.right - _mROI.left - (2 * STROKE_WIDTH),
-                        _mROI.bottom - _mROI.top - (2 * STROKE_WIDTH)
-                );
+                if(ROI == null)
+                {
+                    _notifyErrorListener(ICameraView.CAPTURE_ERROR);
 
+                    return;
+                }
+
+                Tracer.beginSection("DeliverImage");
                 _notifyOnBitmapAvailable(ROI);
+                Tracer.endSection();
+            }
+        }
+    };
+
+    /**
+     * Analysis image reader callbacks.
+     */
+    private final ImageReader.OnImageAvailableListener _onFrameAvailable = new ImageReader.OnImageAvailableListener()
+    {
+        @Override
+        public void onImageAvailable(@NonNull ImageReader imageReader)
+        {
+            Tracer.beginSection("AcquireFrame");
+            Image image = imageReader.acquireLatestImage();
+            Tracer.endSection();
+
+            if(image != null)
+            {
+                // Without the YUV mode the capture is the JPEG image, so an analysis frame must not take its place
+                boolean Capture = _mUseYUV && _mCapturePending;
+                if(Capture)
+                {
+                    _endCapture();
+                }
+
+                // Without the continuous mode only a requested capture is classified, the other frames are buffered
+                if(!_mContinuous && !Capture)
+                {
+                    Tracer.beginSection("BufferFrame");
+                    _notifyOnFrameBuffered(image);
+                    image.close();
+                    Tracer.endSection();
+
+                    return;
+                }
+
+                Tracer.beginSection("DeliverFrame");
+                boolean Consumed = _notifyOnFrameAvailable(image);
+                image.close();
+                Tracer.endSection();
+
+                if(_mContinuous && _mStatistics.onFrameDelivered(Consumed))
+                {
+                    _notifyOnFrameStatistics();
+                }
             }
         }
     };
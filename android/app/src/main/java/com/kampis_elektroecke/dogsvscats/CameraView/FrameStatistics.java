@@ -0,0 +1,100 @@
+package com.kampis_elektroecke.dogsvscats.CameraView;
+
+import android.os.SystemClock;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+public class FrameStatistics
+{
+    private final long WINDOW_NS = 1000000000L;
+
+    private final AtomicLong _mProduced = new AtomicLong();
+    private final AtomicLong _mProcessed = new AtomicLong();
+
+    private long _mWindowStart;
+    private long _mWindowFrames;
+
+    private volatile float _mFramesPerSecond;
+
+    /**
+     * Constructor.
+     */
+    public FrameStatistics()
+    {
+        reset();
+    }
+
+    /**
+     * Reset all counters.
+     */
+    public synchronized void reset()
+    {
+        _mProduced.set(0);
+        _mProcessed.set(0);
+        _mWindowStart = SystemClock.elapsedRealtimeNanos();
+        _mWindowFrames = 0;
+        _mFramesPerSecond = 0.0f;
+    }
+
+    /**
+     * Count a frame that was delivered by the camera.
+     */
+    public void onFrameProduced()
+    {
+        _mProduced.incrementAndGet();
+    }
+
+    /**
+     * Count a frame that was handed to the listeners.
+     * @param Consumed: true if the frame was processed, false if it was dropped
+     * @return true if a new measurement window was completed
+     */
+    public synchronized boolean onFrameDelivered(boolean Consumed)
+    {
+        long Now = SystemClock.elapsedRealtimeNanos();
+
+        if(Consumed)
+        {
+            _mProcessed.incrementAndGet();
+            _mWindowFrames++;
+        }
+
+        if((Now - _mWindowStart) >= WINDOW_NS)
+        {
+            _mFramesPerSecond = (_mWindowFrames * 1e9f) / (Now - _mWindowStart);
+            _mWindowStart = Now;
+            _mWindowFrames = 0;
+
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Count a processed frame as dropped, because it was discarded after it was handed to the listeners.
+     */
+    public synchronized void onFrameDropped()
+    {
+        _mProcessed.decrementAndGet();
+        _mWindowFrames = Math.max(0, _mWindowFrames - 1);
+    }
+
+    /**
+     * Get the processed frames per second of the last measurement window.
+     * @return Frames per second
+     */
+    public float getFramesPerSecond()
+    {
+        return _mFramesPerSecond;
+    }
+
+    /**
+     * Get the number of frames that were delivered by the camera but not processed.
+     * @return Dropped frame count
+     */
+    public long getDroppedFrames()
+    {
+        return Math.max(0, _mProduced.get() - _mProcessed.get());
+    }
+}
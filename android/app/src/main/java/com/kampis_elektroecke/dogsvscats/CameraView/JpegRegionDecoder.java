@@ -0,0 +1,136 @@
+package com.kampis_elektroecke.dogsvscats.CameraView;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Rect;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Decodes only the region of interest of a JPEG image into a reused bitmap.
+ * The full image is never decoded, so a capture allocates no bitmap as long as the region size doesn't change.
+ */
+public class JpegRegionDecoder
+{
+    private final BitmapFactory.Options _mOptions = new BitmapFactory.Options();
+
+    private final Rect _mRegion = new Rect();
+
+    private byte[] _mData = new byte[0];
+
+    private Bitmap _mBitmap;
+
+    /**
+     * Get the largest power of two sample size which keeps the region at least as large as the target.
+     * @param Width: Region width
+     * @param Height: Region height
+     * @param TargetWidth: Minimum width after the sampling
+     * @param TargetHeight: Minimum height after the sampling
+     * @return Sample size
+     */
+    public static int getSampleSize(int Width, int Height, int TargetWidth, int TargetHeight)
+    {
+        int SampleSize = 1;
+        while(((Width / (2 * SampleSize)) >= TargetWidth) && ((Height / (2 * SampleSize)) >= TargetHeight))
+        {
+            SampleSize *= 2;
+        }
+
+        return SampleSize;
+    }
+
+    /**
+     * Decode a region of a JPEG image.
+     * @param Jpeg: JPEG data. The buffer is read from the current position to the limit
+     * @param Region: Region in image coordinates. The region is clipped to the image
+     * @param TargetWidth: Width of the model input
+     * @param TargetHeight: Height of the model input
+     * @return Decoded region or null if the image couldn't be decoded. The bitmap is reused by the next call
+     */
+    public Bitmap decode(@NonNull ByteBuffer Jpeg, @NonNull Rect Region, int TargetWidth, int TargetHeight)
+    {
+        // Copy the data into a reused array, because the decoder needs an array or a stream
+        int Length = Jpeg.remaining();
+        if(_mData.length < Length)
+        {
+            _mData = new byte[Length];
+        }
+        Jpeg.get(_mData, 0, Length);
+
+        BitmapRegionDecoder Decoder;
+        try
+        {
+            Decoder = BitmapRegionDecoder.newInstance(_mData, 0, Length, false);
+        }
+        catch(IOException e)
+        {
+            Log.e("JpegRegionDecoder", "Unable to open image: " + e.getMessage());
+
+            return null;
+        }
+
+        try
+        {
+            _mRegion.set(Region);
+            if(!_mRegion.intersect(0, 0, Decoder.getWidth(), Decoder.getHeight()))
+            {
+                return null;
+            }
+
+            int SampleSize = getSampleSize(_mRegion.width(), _mRegion.height(), TargetWidth, TargetHeight);
+
+            // The decoder draws into the reused bitmap and clips the output, so a rounding difference
+            // of the sampled size only drops the last row or column
+            int Width = Math.max(1, _mRegion.width() / SampleSize);
+            int Height = Math.max(1, _mRegion.height() / SampleSize);
+            if((_mBitmap == null) || (_mBitmap.getWidth() != Width) || (_mBitmap.getHeight() != Height))
+            {
+                release();
+                _mBitmap = Bitmap.createBitmap(Width, Height, Bitmap.Config.ARGB_8888);
+            }
+
+            _mOptions.inSampleSize = SampleSize;
+            _mOptions.inPreferredConfig = Bitmap.Config.ARGB_8888;
+            _mOptions.inMutable = true;
+            _mOptions.inBitmap = _mBitmap;
+
+            try
+            {
+                return Decoder.decodeRegion(_mRegion, _mOptions);
+            }
+            catch(IllegalArgumentException e)
+            {
+                // The bitmap can't be reused. Keep the bitmap of the decoder for the next capture
+                Log.w("JpegRegionDecoder", "Unable to reuse bitmap: " + e.getMessage());
+
+                release();
+                _mBitmap = Decoder.decodeRegion(_mRegion, _mOptions);
+
+                return _mBitmap;
+            }
+        }
+        finally
+        {
+            Decoder.recycle();
+        }
+    }
+
+    /**
+     * Release the reused bitmap.
+     */
+    public void release()
+    {
+        if(_mBitmap != null)
+        {
+            _mBitmap.recycle();
+            _mBitmap = null;
+        }
+
+        _mOptions.inBitmap = null;
+    }
+}
@@ -17,6 +17,7 @@ import android.widget.Button;
 import android.widget.Toast;
 
 import com.google.android.material.navigation.NavigationView;
+import com.kampis_elektroecke.dogsvscats.ObjectDetection.ModelRegistry;
 
 import androidx.annotation.NonNull;
 import androidx.core.view.GravityCompat;
@@ -37,6 +38,7 @@ public class MainActivity extends AppCompatActivity implements NavigationView.On
     private final int RQ_CAMERA_CODE = 100;
 
     private CameraFragment _mCameraFragment;
+    private BatchFragment _mBatchFragment;
     private SettingsFragment _mSettingsFragment;
     private AboutFragment _mAboutFragment;
 
@@ -58,12 +60,19 @@ public class MainActivity extends AppCompatActivity implements NavigationView.On
 
         Settings.putString("CurrentLanguage", "English");
         Settings.putString("CurrentResolution", "1280x960");
-        Settings.putString("ModelInputWidth", "227");
-        Settings.putString("ModelInputHeight", "227");
-        Settings.putString("ModelInputChannel", "3");
         Settings.putString("Threads", "3");
+        Settings.putString("Interpreters", "1");
         Settings.putBoolean("UseNNAPI", true);
+        Settings.putBoolean("AutoTune", true);
         Settings.putBoolean("UseAudio", false);
+        Settings.putBoolean("UseYUV", true);
+        Settings.putBoolean("Continuous", false);
+        Settings.putBoolean("ZeroShutterLag", true);
+        Settings.putBoolean("FrameCache", true);
+        Settings.putBoolean("LatencyOverlay", false);
+        Settings.putBoolean("Tracing", false);
+        Settings.putBoolean("SyntheticEngine", false);
+        Settings.putString("SyntheticLatency", "30");
 
         return Settings;
     }
@@ -141,6 +150,7 @@ public class MainActivity extends AppCompatActivity implements NavigationView.On
 
         _mCameraFragment.setArguments(_mSettings);
         _mCameraFragment.addListener(this);
+        _mBatchFragment = new BatchFragment();
         _mSettingsFragment = new SettingsFragment();
         _mSettingsFragment.addListener(this);
         _mAboutFragment = new AboutFragment();
@@ -192,6 +202,9 @@ public class MainActivity extends AppCompatActivity implements NavigationView.On
         {
             Log.d("AAA", "onResume");
         }
+
+        // Swap in a retrained model, if one was copied to the device
+        ModelRegistry.update(this);
     }
 
     /**
@@ -203,10 +216,27 @@ public class MainActivity extends AppCompatActivity implements NavigationView.On
         super.onDestroy();
 
         _mCameraFragment = null;
+        _mBatchFragment = null;
         _mSettingsFragment = null;
         _mAboutFragment = null;
     }
 
+    /**
+     * On trim memory callback.
+     * @param level: Memory level
+     */
+    @Override
+    public void onTrimMemory(int level)
+    {
+        super.onTrimMemory(level);
+
+        // Release the models which are kept for a fast fragment switch
+        if(level >= TRIM_MEMORY_BACKGROUND)
+        {
+            ModelRegistry.trim();
+        }
+    }
+
     /**
      * On request permission result callback.
      * @param requestCode: Request code
@@ -284,6 +314,13 @@ public class MainActivity extends AppCompatActivity implements NavigationView.On
 
                 break;
             }
+            case R.id.nav_batch:
+            {
+                _mBatchFragment.setArguments(_mSettings);
+                _switchFragment(_mBatchFragment);
+
+                break;
+            }
             case R.id.nav_settings:
             {
                 // Copy all available camera resolutions to the settings fragment
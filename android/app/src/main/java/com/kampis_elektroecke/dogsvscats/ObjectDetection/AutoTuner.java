@@ -0,0 +1,281 @@
+package com.kampis_elektroecke.dogsvscats.ObjectDetection;
+
+import android.content.SharedPreferences;
+import android.os.Build;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import org.tensorflow.lite.Interpreter;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+public class AutoTuner
+{
+    public enum Delegate
+    {
+        CPU,
+        NNAPI,
+        XNNPACK
+    }
+
+    public static class Configuration
+    {
+        private final Delegate _mDelegate;
+
+        private final int _mThreads;
+
+        private final float _mLatency;
+
+        /**
+         * Constructor.
+         * @param Delegate: Delegate for the interpreter
+         * @param Threads: Number of CPU threads
+         * @param Latency: Measured latency in milliseconds
+         */
+        Configuration(@NonNull Delegate Delegate, int Threads, float Latency)
+        {
+            _mDelegate = Delegate;
+            _mThreads = Threads;
+            _mLatency = Latency;
+        }
+
+        /**
+         * Create the interpreter options for this configuration.
+         * @return Interpreter options
+         */
+        public Interpreter.Options createOptions()
+        {
+            Interpreter.Options Options = new Interpreter.Options();
+            Options.setNumThreads(_mThreads);
+            Options.setUseNNAPI(_mDelegate == Delegate.NNAPI);
+            Options.setUseXNNPACK(_mDelegate == Delegate.XNNPACK);
+
+            return Options;
+        }
+
+        /**
+         * Get the delegate of the configuration.
+         * @return Delegate
+         */
+        public Delegate getDelegate()
+        {
+            return _mDelegate;
+        }
+
+        /**
+         * Get the number of CPU threads of the configuration.
+         * @return Thread count
+         */
+        public int getThreads()
+        {
+            return _mThreads;
+        }
+
+        /**
+         * Get the measured latency of the configuration.
+         * @return Latency in milliseconds
+         */
+        public float getLatency()
+        {
+            return _mLatency;
+        }
+
+        @NonNull
+        @Override
+        public String toString()
+        {
+            return _mDelegate + " with " + _mThreads + " threads (" + _mLatency + " ms)";
+        }
+    }
+
+    /**
+     * Name of the preferences file for the stored configuration. The file isn't shared with other settings.
+     */
+    public static final String PREFERENCES = "AutoTune";
+
+    private static final String KEY_MODEL = "AutoTuner.Key";
+    private static final String KEY_DELEGATE = "AutoTuner.Delegate";
+    private static final String KEY_THREADS = "AutoTuner.Threads";
+    private static final String KEY_LATENCY = "AutoTuner.Latency";
+
+    private static final int VERSION = 3;
+    private static final int WARMUP_RUNS = 2;
+    private static final int MEASURE_RUNS = 10;
+
+    /**
+     * Build the key for the stored configuration. A new model, another pool size or a system update invalidates the stored configuration.
+     * The model is identified by the checksum of its data, because a retrained model usually has the same size.
+     * @param Model: Model data
+     * @param PoolSize: Number of interpreters which run at the same time
+     * @return Key
+     */
+    private static String _getKey(@NonNull ByteBuffer Model, int PoolSize)
+    {
+        CRC32 Checksum = new CRC32();
+        ByteBuffer Data = Model.duplicate();
+        Data.clear();
+        Checksum.update(Data);
+
+        return VERSION + "/" + Long.toHexString(Checksum.getValue()) + "/" + Model.capacity() + "/" + PoolSize + "/" + Build.FINGERPRINT;
+    }
+
+    /**
+     * Get the number of CPU threads, which each interpreter of the pool can use without oversubscribing the cores.
+     * @param PoolSize: Number of interpreters which run at the same time
+     * @return Thread budget of a single interpreter
+     */
+    public static int getThreadBudget(int PoolSize)
+    {
+        return Math.max(1, Runtime.getRuntime().availableProcessors() / Math.max(1, PoolSize));
+    }
+
+    /**
+     * Measure the median latency of a configuration.
+     * @param Model: Model data
+     * @param Delegate: Delegate for the interpreter
+     * @param Threads: Number of CPU threads
+     * @return Configuration with the measured latency or null if the configuration isn't supported
+     */
+    private static Configuration _measure(@NonNull ByteBuffer Model, @NonNull Delegate Delegate, int Threads)
+    {
+        Configuration Candidate = new Configuration(Delegate, Threads, 0.0f);
+        Interpreter TfLite = null;
+
+        try
+        {
+            TfLite = new Interpreter(Model, Candidate.createOptions());
+
+            ByteBuffer Input = ByteBuffer.allocateDirect(TfLite.getInputTensor(0).numBytes());
+            Input.order(ByteOrder.nativeOrder());
+            ByteBuffer Output = ByteBuffer.allocateDirect(TfLite.getOutputTensor(0).numBytes());
+            Output.order(ByteOrder.nativeOrder());
+
+            for(int i = 0; i < WARMUP_RUNS; i++)
+            {
+                Output.rewind();
+                TfLite.run(Input, Output);
+            }
+
+            long[] Latency = new long[MEASURE_RUNS];
+            for(int i = 0; i < MEASURE_RUNS; i++)
+            {
+                long Start = SystemClock.elapsedRealtimeNanos();
+
+                Output.rewind();
+                TfLite.run(Input, Output);
+
+                Latency[i] = SystemClock.elapsedRealtimeNanos() - Start;
+            }
+
+            Arrays.sort(Latency);
+
+            return new Configuration(Delegate, Threads, Latency[MEASURE_RUNS / 2] / 1e6f);
+        }
+        catch(RuntimeException e)
+        {
+            Log.w("AutoTuner", "Configuration " + Delegate + " with " + Threads + " threads not supported: " + e.getMessage());
+
+            return null;
+        }
+        finally
+        {
+            if(TfLite != null)
+            {
+                TfLite.close();
+            }
+        }
+    }
+
+    /**
+     * Benchmark the CPU with several thread counts, NNAPI and XNNPACK and return the configuration with the lowest latency.
+     * The interpreters of the pool run at the same time, so only thread counts within the budget of a single interpreter are measured.
+     * @param Model: Model data
+     * @param PoolSize: Number of interpreters which run at the same time
+     * @return Fastest configuration
+     */
+    public static Configuration benchmark(@NonNull ByteBuffer Model, int PoolSize)
+    {
+        int Budget = getThreadBudget(PoolSize);
+
+        List<Integer> ThreadCounts = new ArrayList<>();
+        for(int Threads : new int[] {1, 2, 4, Budget})
+        {
+            if((Threads <= Budget) && !ThreadCounts.contains(Threads))
+            {
+                ThreadCounts.add(Threads);
+            }
+        }
+
+        List<Configuration> Candidates = new ArrayList<>();
+        for(int Threads : ThreadCounts)
+        {
+            Candidates.add(_measure(Model, Delegate.CPU, Threads));
+            Candidates.add(_measure(Model, Delegate.XNNPACK, Threads));
+        }
+        Candidates.add(_measure(Model, Delegate.NNAPI, 1));
+
+        // The default configuration is used if no candidate is working
+        Configuration Best = new Configuration(Delegate.CPU, 1, Float.MAX_VALUE);
+        for(Configuration Candidate : Candidates)
+        {
+            if(Candidate != null)
+            {
+                Log.d("AutoTuner", "Measured " + Candidate);
+
+                if(Candidate.getLatency() < Best.getLatency())
+                {
+                    Best = Candidate;
+                }
+            }
+        }
+
+        return Best;
+    }
+
+    /**
+     * Get the fastest configuration for the model. The stored configuration is used if it exists,
+     * otherwise the configurations are measured and the result is stored. Call it once per model load,
+     * because the key contains the checksum of the whole model.
+     * @param Preferences: Storage for the configuration, opened with PREFERENCES
+     * @param Model: Model data
+     * @param PoolSize: Number of interpreters which run at the same time
+     * @return Fastest configuration
+     */
+    public static Configuration getConfiguration(@NonNull SharedPreferences Preferences, @NonNull ByteBuffer Model, int PoolSize)
+    {
+        String Key = _getKey(Model, PoolSize);
+
+        if(Key.equals(Preferences.getString(KEY_MODEL, null)))
+        {
+            try
+            {
+                Delegate StoredDelegate = Delegate.valueOf(Preferences.getString(KEY_DELEGATE, Delegate.CPU.name()));
+
+                return new Configuration(StoredDelegate, Preferences.getInt(KEY_THREADS, 1), Preferences.getFloat(KEY_LATENCY, 0.0f));
+            }
+            catch(IllegalArgumentException e)
+            {
+                Log.w("AutoTuner", "Invalid stored configuration: " + e.getMessage());
+            }
+        }
+
+        Configuration Best = benchmark(Model, PoolSize);
+        Log.i("AutoTuner", "Selected " + Best);
+
+        Preferences.edit()
+                .putString(KEY_MODEL, Key)
+                .putString(KEY_DELEGATE, Best.getDelegate().name())
+                .putInt(KEY_THREADS, Best.getThreads())
+                .putFloat(KEY_LATENCY, Best.getLatency())
+                .apply();
+
+        return Best;
+    }
+}
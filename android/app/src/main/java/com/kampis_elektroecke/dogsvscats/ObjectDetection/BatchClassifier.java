@@ -0,0 +1,455 @@
+package com.kampis_elektroecke.dogsvscats.ObjectDetection;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.provider.DocumentsContract;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class BatchClassifier
+{
+    public interface IBatchClassification
+    {
+        /**
+         * An image was classified. Called on the pipeline thread.
+         * @param Image: Image URI
+         * @param Probabilities: Predictions for each class. The array is reused and only valid until the callback returns
+         */
+        void onImageClassified(Uri Image, float[] Probabilities);
+
+        /**
+         * An image couldn't be decoded. Called on the pipeline thread.
+         * @param Image: Image URI
+         */
+        void onImageFailed(Uri Image);
+
+        /**
+         * Progress of the batch. Called on the main thread after each inference batch, at most four times per second.
+         * @param Done: Number of handled images
+         * @param Total: Number of images
+         */
+        void onBatchProgress(int Done, int Total);
+
+        /**
+         * All images were handled or the batch was cancelled. Called on the main thread.
+         * @param Classified: Number of classified images
+         * @param Failed: Number of images which couldn't be decoded or classified
+         * @param Cancelled: Number of images which weren't handled because the batch was cancelled
+         * @param ImagesPerSecond: Throughput of the whole pipeline
+         */
+        void onBatchFinished(int Classified, int Failed, int Cancelled, float ImagesPerSecond);
+    }
+
+    private static class Item
+    {
+        final Uri Image;
+        final Bitmap Pixels;
+
+        /**
+         * Constructor.
+         * @param Image: Image URI
+         * @param Pixels: Decoded and scaled image or null if the image couldn't be decoded
+         */
+        Item(@NonNull Uri Image, Bitmap Pixels)
+        {
+            this.Image = Image;
+            this.Pixels = Pixels;
+        }
+    }
+
+    private static final long PROGRESS_INTERVAL_MS = 250;
+
+    private final ContentResolver _mResolver;
+
+    private final ObjectDetection _mDetection;
+
+    private final IBatchClassification _mListener;
+
+    private final int _mDecoders;
+    private final int _mBatchSize;
+
+    private final Handler _mMainHandler = new Handler(Looper.getMainLooper());
+
+    private ExecutorService _mDecoderPool;
+
+    private Thread _mPipeline;
+
+    private volatile boolean _mIsCancelled;
+
+    /**
+     * Decode an image with a sample size which keeps the image at least as large as the model input
+     * and scale it to the model input. Only the sampled image is held in memory.
+     * @param Image: Image URI
+     * @param Width: Model input width
+     * @param Height: Model input height
+     * @return Scaled image or null if the image couldn't be decoded
+     */
+    private Bitmap _decode(@NonNull Uri Image, int Width, int Height)
+    {
+        try
+        {
+            BitmapFactory.Options Options = new BitmapFactory.Options();
+            Options.inJustDecodeBounds = true;
+            try(InputStream Stream = _mResolver.openInputStream(Image))
+            {
+                BitmapFactory.decodeStream(Stream, null, Options);
+            }
+
+            if((Options.outWidth <= 0) || (Options.outHeight <= 0))
+            {
+                return null;
+            }
+
+            Options.inJustDecodeBounds = false;
+            Options.inSampleSize = 1;
+            while(((Options.outWidth / (2 * Options.inSampleSize)) >= Width) && ((Options.outHeight / (2 * Options.inSampleSize)) >= Height))
+            {
+                Options.inSampleSize *= 2;
+            }
+
+            Bitmap Decoded;
+            try(InputStream Stream = _mResolver.openInputStream(Image))
+            {
+                Decoded = BitmapFactory.decodeStream(Stream, null, Options);
+            }
+
+            if(Decoded == null)
+            {
+                return null;
+            }
+
+            Bitmap Scaled = Bitmap.createScaledBitmap(Decoded, Width, Height, true);
+            if(Scaled != Decoded)
+            {
+                Decoded.recycle();
+            }
+
+            return Scaled;
+        }
+        catch(IOException | RuntimeException e)
+        {
+            Log.w("BatchClassifier", "Unable to decode " + Image + ": " + e.getMessage());
+
+            return null;
+        }
+    }
+
+    /**
+     * Release the decoded image of a queue item.
+     * @param Entry: Queue item
+     */
+    private static void _recycle(@NonNull Item Entry)
+    {
+        if(Entry.Pixels != null)
+        {
+            Entry.Pixels.recycle();
+        }
+    }
+
+    /**
+     * Decoder loop. Each decoder takes the next image until all images are decoded.
+     * The bounded queue blocks the decoders if the inference falls behind.
+     * @param Images: Image URIs
+     * @param Next: Index of the next image
+     * @param Queue: Queue to the inference stage
+     * @param Stopped: Set by the pipeline when it doesn't take further images
+     * @param Descriptor: Geometry of the model
+     */
+    private void _decodeImages(@NonNull List<Uri> Images, @NonNull AtomicInteger Next, @NonNull BlockingQueue<Item> Queue,
+                               @NonNull AtomicBoolean Stopped, @NonNull ModelDescriptor Descriptor)
+    {
+        int Index;
+        while(!_mIsCancelled && !Stopped.get() && ((Index = Next.getAndIncrement()) < Images.size()))
+        {
+            Uri Image = Images.get(Index);
+            Item Entry = new Item(Image, _decode(Image, Descriptor.getInputWidth(), Descriptor.getInputHeight()));
+
+            // The batch can be cancelled while the image is decoded
+            if(_mIsCancelled || Stopped.get())
+            {
+                _recycle(Entry);
+
+                return;
+            }
+
+            try
+            {
+                Queue.put(Entry);
+            }
+            catch(InterruptedException e)
+            {
+                _recycle(Entry);
+
+                return;
+            }
+
+            // The pipeline has drained the queue before the image arrived. Only one side removes the image
+            if(Stopped.get() && Queue.remove(Entry))
+            {
+                _recycle(Entry);
+
+                return;
+            }
+        }
+    }
+
+    /**
+     * Pipeline loop. Starts the decoders, classifies the decoded images in batches and reports the results.
+     * @param Folder: Document tree with the images or null
+     * @param Images: Image URIs, used if no folder is given
+     */
+    private void _run(Uri Folder, List<Uri> Images)
+    {
+        long Start = SystemClock.elapsedRealtime();
+
+        if(Folder != null)
+        {
+            Images = listImages(_mResolver, Folder);
+        }
+
+        // The images are decoded once in the size of the model input
+        final ModelDescriptor Descriptor = _mDetection.getDescriptor();
+        final List<Uri> Input = Images;
+        final int Total = Input.size();
+        final AtomicInteger Next = new AtomicInteger();
+        final AtomicBoolean Stopped = new AtomicBoolean();
+
+        // The queue holds the next batch, while the current batch is classified
+        final BlockingQueue<Item> Queue = new ArrayBlockingQueue<>(_mBatchSize);
+
+        for(int i = 0; i < _mDecoders; i++)
+        {
+            _mDecoderPool.execute(() -> _decodeImages(Input, Next, Queue, Stopped, Descriptor));
+        }
+
+        // One result array per image of a batch. The views are used for the last batch, which can be smaller
+        float[][] Rows = new float[_mBatchSize][Descriptor.getClassCount()];
+        float[][][] Views = new float[_mBatchSize + 1][][];
+        for(int i = 1; i <= _mBatchSize; i++)
+        {
+            Views[i] = new float[i][];
+            System.arraycopy(Rows, 0, Views[i], 0, i);
+        }
+
+        List<Item> Batch = new ArrayList<>(_mBatchSize);
+        List<Bitmap> Bitmaps = new ArrayList<>(_mBatchSize);
+
+        int Done = 0;
+        int Classified = 0;
+        int Failed = 0;
+        long LastProgress = 0;
+
+        try
+        {
+            while(!_mIsCancelled && (Done < Total))
+            {
+                Batch.clear();
+                Bitmaps.clear();
+
+                // Wait for the first image and take all other decoded images up to the batch size
+                Batch.add(Queue.take());
+                Queue.drainTo(Batch, _mBatchSize - 1);
+
+                for(Item Entry : Batch)
+                {
+                    if(Entry.Pixels == null)
+                    {
+                        _mListener.onImageFailed(Entry.Image);
+                        Failed++;
+                    }
+                    else
+                    {
+                        Bitmaps.add(Entry.Pixels);
+                    }
+                }
+
+                if(!Bitmaps.isEmpty() && _mDetection.classifyBatch(Bitmaps, Views[Bitmaps.size()]))
+                {
+                    int Row = 0;
+                    for(Item Entry : Batch)
+                    {
+                        if(Entry.Pixels != null)
+                        {
+                            _mListener.onImageClassified(Entry.Image, Rows[Row++]);
+                            Classified++;
+                        }
+                    }
+                }
+                else if(!_mIsCancelled && !Thread.currentThread().isInterrupted())
+                {
+                    Failed += Bitmaps.size();
+                }
+
+                for(Bitmap Pixels : Bitmaps)
+                {
+                    Pixels.recycle();
+                }
+
+                Done += Batch.size();
+
+                long Now = SystemClock.elapsedRealtime();
+                if((Now - LastProgress) >= PROGRESS_INTERVAL_MS)
+                {
+                    final int Progress = Done;
+                    _mMainHandler.post(() -> _mListener.onBatchProgress(Progress, Total));
+                    LastProgress = Now;
+                }
+            }
+        }
+        catch(InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        finally
+        {
+            // Stop the decoders and release the images which weren't classified
+            Stopped.set(true);
+            _mDecoderPool.shutdownNow();
+
+            Item Entry;
+            while((Entry = Queue.poll()) != null)
+            {
+                _recycle(Entry);
+            }
+        }
+
+        float Seconds = Math.max(1, SystemClock.elapsedRealtime() - Start) / 1000.0f;
+        final int ClassifiedImages = Classified;
+        final int FailedImages = Failed;
+        final int CancelledImages = Total - Classified - Failed;
+        final float ImagesPerSecond = Classified / Seconds;
+
+        Log.i("BatchClassifier", Classified + " images classified, " + Failed + " failed, " + CancelledImages + " cancelled, " + ImagesPerSecond + " images/s");
+
+        _mMainHandler.post(() -> _mListener.onBatchFinished(ClassifiedImages, FailedImages, CancelledImages, ImagesPerSecond));
+    }
+
+    /**
+     * Start the pipeline thread.
+     * @param Folder: Document tree with the images or null
+     * @param Images: Image URIs, used if no folder is given
+     */
+    private void _start(Uri Folder, List<Uri> Images)
+    {
+        if(isRunning())
+        {
+            throw new IllegalStateException("A batch is already running");
+        }
+
+        _mIsCancelled = false;
+        _mDecoderPool = Executors.newFixedThreadPool(_mDecoders);
+        _mPipeline = new Thread(() -> _run(Folder, Images), "BatchClassifier");
+        _mPipeline.start();
+    }
+
+    /**
+     * List all images of a document tree, e.g. from ACTION_OPEN_DOCUMENT_TREE. Sub folders are ignored.
+     * @param Resolver: Content resolver
+     * @param Folder: Document tree URI
+     * @return List with image URIs
+     */
+    public static List<Uri> listImages(@NonNull ContentResolver Resolver, @NonNull Uri Folder)
+    {
+        List<Uri> Images = new ArrayList<>();
+
+        Uri Children = DocumentsContract.buildChildDocumentsUriUsingTree(Folder, DocumentsContract.getTreeDocumentId(Folder));
+        String[] Projection = new String[] {DocumentsContract.Document.COLUMN_DOCUMENT_ID, DocumentsContract.Document.COLUMN_MIME_TYPE};
+
+        try(Cursor Result = Resolver.query(Children, Projection, null, null, null))
+        {
+            while((Result != null) && Result.moveToNext())
+            {
+                String MimeType = Result.getString(1);
+                if((MimeType != null) && MimeType.startsWith("image/"))
+                {
+                    Images.add(DocumentsContract.buildDocumentUriUsingTree(Folder, Result.getString(0)));
+                }
+            }
+        }
+        catch(SecurityException | IllegalArgumentException e)
+        {
+            Log.e("BatchClassifier", "Unable to list " + Folder + ": " + e.getMessage());
+        }
+
+        return Images;
+    }
+
+    /**
+     * Constructor.
+     * @param Resolver: Content resolver to open the images
+     * @param Detection: Loaded object detection
+     * @param Decoders: Number of decoder threads
+     * @param BatchSize: Number of images per interpreter invocation
+     * @param Listener: Result listener
+     */
+    public BatchClassifier(@NonNull ContentResolver Resolver, @NonNull ObjectDetection Detection, int Decoders, int BatchSize, @NonNull IBatchClassification Listener)
+    {
+        _mResolver = Resolver;
+        _mDetection = Detection;
+        _mDecoders = Decoders;
+        _mBatchSize = BatchSize;
+        _mListener = Listener;
+    }
+
+    /**
+     * Classify a list of images in the background.
+     * At most two batches and one image per decoder thread are held in memory, regardless of the number of images:
+     * the batch which is classified, the next batch in the queue and the images which wait for space in the queue.
+     * @param Images: Image URIs, e.g. from ACTION_OPEN_DOCUMENT
+     * @throws IllegalStateException: A batch is already running
+     */
+    public void classify(@NonNull List<Uri> Images)
+    {
+        _start(null, new ArrayList<>(Images));
+    }
+
+    /**
+     * Classify all images of a folder in the background.
+     * @param Folder: Document tree URI, e.g. from ACTION_OPEN_DOCUMENT_TREE
+     * @throws IllegalStateException: A batch is already running
+     */
+    public void classifyFolder(@NonNull Uri Folder)
+    {
+        _start(Folder, null);
+    }
+
+    /**
+     * Cancel the running batch. onBatchFinished is called with the images which were classified so far.
+     */
+    public void cancel()
+    {
+        _mIsCancelled = true;
+
+        if(_mPipeline != null)
+        {
+            _mPipeline.interrupt();
+        }
+    }
+
+    /**
+     * Check if a batch is running.
+     * @return true if the pipeline thread is active
+     */
+    public boolean isRunning()
+    {
+        return (_mPipeline != null) && _mPipeline.isAlive();
+    }
+}
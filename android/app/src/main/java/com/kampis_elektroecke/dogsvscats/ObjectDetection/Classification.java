@@ -0,0 +1,155 @@
+package com.kampis_elektroecke.dogsvscats.ObjectDetection;
+
+import androidx.annotation.NonNull;
+
+public class Classification
+{
+    private final float[] _mProbabilities;
+
+    private final int[] _mTopIndices;
+
+    private int _mTopCount;
+
+    /**
+     * Select the indices of the K largest values without allocating memory.
+     * The indices are sorted by descending value.
+     * @param Values: Values to select from
+     * @param Count: Number of values to use
+     * @param Indices: Output array for the indices. The length of the array is K
+     * @return Number of selected indices
+     */
+    public static int TopK(@NonNull float[] Values, int Count, @NonNull int[] Indices)
+    {
+        Count = Math.min(Count, Values.length);
+        int K = Math.min(Indices.length, Count);
+        int Filled = 0;
+
+        // Nothing to select, e.g. for a model without classes or a result without top classes
+        if(K <= 0)
+        {
+            return 0;
+        }
+
+        for(int i = 0; i < Count; i++)
+        {
+            float Value = Values[i];
+
+            // Skip values which are smaller than the current K-th value
+            if((Filled == K) && (Value <= Values[Indices[K - 1]]))
+            {
+                continue;
+            }
+
+            // Insert the index and shift the smaller entries
+            int j = (Filled < K) ? Filled++ : (K - 1);
+            while((j > 0) && (Values[Indices[j - 1]] < Value))
+            {
+                Indices[j] = Indices[j - 1];
+                j--;
+            }
+
+            Indices[j] = i;
+        }
+
+        return Filled;
+    }
+
+    /**
+     * Get the index of the largest value.
+     * @param Values: Values to select from
+     * @param Count: Number of values to use
+     * @return Index of the largest value or -1 if no value is available
+     */
+    public static int ArgMax(@NonNull float[] Values, int Count)
+    {
+        int Index = -1;
+        float Max = Float.NEGATIVE_INFINITY;
+
+        for(int i = 0; i < Count; i++)
+        {
+            if((Index == -1) || (Values[i] > Max))
+            {
+                Max = Values[i];
+                Index = i;
+            }
+        }
+
+        return Index;
+    }
+
+    /**
+     * Constructor.
+     * @param Probabilities: Array with the predictions for each class. The array is used without a copy
+     * @param K: Number of top classes
+     */
+    public Classification(@NonNull float[] Probabilities, int K)
+    {
+        _mProbabilities = Probabilities;
+        _mTopIndices = new int[Math.max(0, Math.min(K, Probabilities.length))];
+        _mTopCount = 0;
+    }
+
+    /**
+     * Update the top classes after the predictions have changed.
+     */
+    void update()
+    {
+        _mTopCount = TopK(_mProbabilities, _mProbabilities.length, _mTopIndices);
+    }
+
+    /**
+     * Get the raw predictions for each class.
+     * @return Array with floating point predictions
+     */
+    public float[] getProbabilities()
+    {
+        return _mProbabilities;
+    }
+
+    /**
+     * Get the number of classes.
+     * @return Class count
+     */
+    public int getClassCount()
+    {
+        return _mProbabilities.length;
+    }
+
+    /**
+     * Get the number of available top classes.
+     * @return Number of top classes
+     */
+    public int getTopCount()
+    {
+        return _mTopCount;
+    }
+
+    /**
+     * Get the class index of a top class.
+     * @param Rank: Rank of the class, starting with 0 for the best class
+     * @return Class index
+     */
+    public int getTopIndex(int Rank)
+    {
+        return _mTopIndices[Rank];
+    }
+
+    /**
+     * Get the prediction of a top class.
+     * @param Rank: Rank of the class, starting with 0 for the best class
+     * @return Floating point prediction
+     */
+    public float getTopScore(int Rank)
+    {
+        return _mProbabilities[_mTopIndices[Rank]];
+    }
+
+    /**
+     * Get the index of the best class.
+     * @return Class index or -1 if no result is available
+     */
+    public int getBest()
+    {
+        return (_mTopCount > 0) ? _mTopIndices[0] : -1;
+    }
+}
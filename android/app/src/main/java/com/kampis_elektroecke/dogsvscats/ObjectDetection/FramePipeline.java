@@ -0,0 +1,159 @@
+package com.kampis_elektroecke.dogsvscats.ObjectDetection;
+
+import androidx.annotation.NonNull;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+
+/**
+ * Preallocated slots for the stages of the continuous classification. A slot travels from the preprocessing
+ * thread to the inference thread and from there to the main thread, which hands it back to the preprocessing thread.
+ * Each hop uses its own single producer / single consumer queue, so the stages only wait for each other
+ * if all slots are in use and a frame of the preprocessing stage is dropped in this case.
+ * The class only depends on plain Java, so the pipeline can be benchmarked on a desktop JVM.
+ */
+public class FramePipeline
+{
+    public static class Slot
+    {
+        public final ByteBuffer Input;
+
+        /**
+         * Float view of the input or null for a quantized input.
+         */
+        public final FloatBuffer Floats;
+        public final byte[] Signature = new byte[FrameSignature.SIZE];
+        public final float[] Scores;
+        public final Classification Result;
+
+        IClassification Callback;
+
+        /**
+         * The scores were taken from the result cache and the model doesn't need to run.
+         */
+        boolean IsCached;
+
+        /**
+         * The scores are valid. A slot is invalid if the inference stage had no model or no interpreter.
+         */
+        boolean IsValid;
+
+        /**
+         * Constructor.
+         * @param Descriptor: Geometry of the model
+         * @param TopK: Number of top classes of the result
+         */
+        Slot(@NonNull ModelDescriptor Descriptor, int TopK)
+        {
+            Input = Descriptor.getInputFormat().allocate(Descriptor.getInputWidth(), Descriptor.getInputHeight(),
+                    Descriptor.getInputChannels());
+            Floats = Descriptor.getInputFormat().createFloatView(Input);
+            Scores = new float[Descriptor.getClassCount()];
+            Result = new Classification(Scores, TopK);
+        }
+    }
+
+    private final ModelDescriptor _mDescriptor;
+
+    private final Slot[] _mSlots;
+
+    private final SlotQueue _mFree;
+    private final SlotQueue _mPreprocessed;
+    private final SlotQueue _mClassified;
+
+    /**
+     * Constructor. All slots are allocated up front and are free.
+     * @param Descriptor: Geometry of the model
+     * @param Depth: Number of slots
+     * @param TopK: Number of top classes of each result
+     */
+    public FramePipeline(@NonNull ModelDescriptor Descriptor, int Depth, int TopK)
+    {
+        _mDescriptor = Descriptor;
+        _mSlots = new Slot[Depth];
+
+        _mFree = new SlotQueue(Depth);
+        _mPreprocessed = new SlotQueue(Depth);
+        _mClassified = new SlotQueue(Depth);
+
+        for(int i = 0; i < Depth; i++)
+        {
+            _mSlots[i] = new Slot(Descriptor, TopK);
+            _mFree.offer(i);
+        }
+    }
+
+    /**
+     * Get the geometry of the model for which the slots are allocated.
+     * @return Model descriptor
+     */
+    public ModelDescriptor getDescriptor()
+    {
+        return _mDescriptor;
+    }
+
+    /**
+     * Get a slot.
+     * @param Index: Slot index
+     * @return Slot
+     */
+    public Slot getSlot(int Index)
+    {
+        return _mSlots[Index];
+    }
+
+    /**
+     * Take a free slot. Called by the preprocessing stage.
+     * @return Slot index or -1 if all slots are in use
+     */
+    public int claim()
+    {
+        return _mFree.poll();
+    }
+
+    /**
+     * Hand a preprocessed slot to the inference stage. Called by the preprocessing stage.
+     * @param Index: Slot index from claim
+     */
+    public void submit(int Index)
+    {
+        _mPreprocessed.offer(Index);
+    }
+
+    /**
+     * Take the oldest preprocessed slot. Called by the inference stage.
+     * @return Slot index or -1 if no slot is waiting
+     */
+    public int take()
+    {
+        return _mPreprocessed.poll();
+    }
+
+    /**
+     * Hand a classified slot to the publishing stage. Called by the inference stage.
+     * @param Index: Slot index from take
+     */
+    public void complete(int Index)
+    {
+        _mClassified.offer(Index);
+    }
+
+    /**
+     * Take the oldest classified slot. Called by the publishing stage.
+     * @return Slot index or -1 if no slot is waiting
+     */
+    public int collect()
+    {
+        return _mClassified.poll();
+    }
+
+    /**
+     * Return a published slot to the preprocessing stage. Called by the publishing stage.
+     * @param Index: Slot index from collect
+     */
+    public void recycle(int Index)
+    {
+        _mSlots[Index].Callback = null;
+        _mFree.offer(Index);
+    }
+}
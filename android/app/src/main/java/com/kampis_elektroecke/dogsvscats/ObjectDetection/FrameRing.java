@@ -0,0 +1,140 @@
+package com.kampis_elektroecke.dogsvscats.ObjectDetection;
+
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+
+/**
+ * Ring of the most recent preprocessed camera frames for a zero shutter lag capture.
+ * One thread writes the frames, another thread takes the newest frame. The writer never
+ * overwrites the newest frame or the frame which is currently read, so no frame is copied under the lock.
+ */
+public class FrameRing
+{
+    private final ModelDescriptor _mDescriptor;
+
+    private final ByteBuffer[] _mInputs;
+    private final FloatBuffer[] _mFloats;
+
+    private final byte[][] _mSignatures;
+
+    private final long[] _mTimestamps;
+
+    private int _mNewest = -1;
+    private int _mReading = -1;
+
+    /**
+     * Constructor. The input buffers for all slots are allocated up front.
+     * @param Descriptor: Geometry of the model
+     * @param Capacity: Number of slots. At least three slots are used, so the writer always finds a free slot
+     */
+    public FrameRing(@NonNull ModelDescriptor Descriptor, int Capacity)
+    {
+        Capacity = Math.max(3, Capacity);
+
+        _mDescriptor = Descriptor;
+        _mInputs = new ByteBuffer[Capacity];
+        _mFloats = new FloatBuffer[Capacity];
+        _mSignatures = new byte[Capacity][FrameSignature.SIZE];
+        _mTimestamps = new long[Capacity];
+
+        for(int i = 0; i < Capacity; i++)
+        {
+            _mInputs[i] = Descriptor.getInputFormat().allocate(Descriptor.getInputWidth(), Descriptor.getInputHeight(),
+                    Descriptor.getInputChannels());
+            _mFloats[i] = Descriptor.getInputFormat().createFloatView(_mInputs[i]);
+        }
+    }
+
+    /**
+     * Get the geometry of the model for which the frames are preprocessed.
+     * @return Model descriptor
+     */
+    public ModelDescriptor getDescriptor()
+    {
+        return _mDescriptor;
+    }
+
+    /**
+     * Get the input buffer of a slot.
+     * @param Slot: Slot index
+     * @return Preprocessed model input
+     */
+    public ByteBuffer getInput(int Slot)
+    {
+        return _mInputs[Slot];
+    }
+
+    /**
+     * Get the float view of the input buffer of a slot.
+     * @param Slot: Slot index
+     * @return Float view or null for a quantized input
+     */
+    public FloatBuffer getFloats(int Slot)
+    {
+        return _mFloats[Slot];
+    }
+
+    /**
+     * Get the frame signature of a slot.
+     * @param Slot: Slot index
+     * @return Signature for the result cache
+     */
+    public byte[] getSignature(int Slot)
+    {
+        return _mSignatures[Slot];
+    }
+
+    /**
+     * Claim a slot for the next frame. The slot stays invisible for the reader until it is published.
+     * @return Slot index
+     */
+    public synchronized int claim()
+    {
+        int Slot = (_mNewest + 1) % _mInputs.length;
+        while((Slot == _mNewest) || (Slot == _mReading))
+        {
+            Slot = (Slot + 1) % _mInputs.length;
+        }
+
+        return Slot;
+    }
+
+    /**
+     * Make a written slot the newest frame.
+     * @param Slot: Slot index from claim
+     */
+    public synchronized void publish(int Slot)
+    {
+        _mTimestamps[Slot] = SystemClock.elapsedRealtime();
+        _mNewest = Slot;
+    }
+
+    /**
+     * Take the newest frame. The slot isn't overwritten until it is released.
+     * @param MaxAge: Largest age of the frame in milliseconds
+     * @return Slot index or -1 if no frame is recent enough
+     */
+    public synchronized int acquireNewest(long MaxAge)
+    {
+        if((_mNewest == -1) || (_mReading != -1) || ((SystemClock.elapsedRealtime() - _mTimestamps[_mNewest]) > MaxAge))
+        {
+            return -1;
+        }
+
+        _mReading = _mNewest;
+
+        return _mReading;
+    }
+
+    /**
+     * Release a slot from acquireNewest.
+     */
+    public synchronized void release()
+    {
+        _mReading = -1;
+    }
+}
@@ -0,0 +1,86 @@
+package com.kampis_elektroecke.dogsvscats.ObjectDetection;
+
+import androidx.annotation.NonNull;
+
+import java.nio.ByteBuffer;
+
+public class FrameSignature
+{
+    /**
+     * Number of cells in each direction. The signature has GRID * GRID luminance values.
+     */
+    public static final int GRID = 8;
+
+    /**
+     * Length of a signature in bytes.
+     */
+    public static final int SIZE = GRID * GRID;
+
+    // Samples per cell in each direction
+    private static final int SAMPLES = 4;
+
+    /**
+     * Get the position of a sample.
+     * @param Cell: Cell index
+     * @param Sample: Sample index inside the cell
+     * @param Start: Start of the region
+     * @param Length: Length of the region
+     * @return Position of the sample
+     */
+    private static int _getPosition(int Cell, int Sample, int Start, int Length)
+    {
+        return Start + ((((Cell * SAMPLES) + Sample) * 2 + 1) * Length) / (2 * GRID * SAMPLES);
+    }
+
+    /**
+     * Compute the signature of a region of a luminance plane.
+     * Each value of the signature is the mean luminance of one cell of a GRID x GRID grid over the region.
+     * @param Y: Luminance plane
+     * @param RowStride: Row stride of the luminance plane
+     * @param Left: Left edge of the region
+     * @param Top: Top edge of the region
+     * @param Width: Width of the region
+     * @param Height: Height of the region
+     * @param Signature: Output array with SIZE bytes
+     */
+    public static void fromLuma(@NonNull ByteBuffer Y, int RowStride, int Left, int Top, int Width, int Height, @NonNull byte[] Signature)
+    {
+        for(int cy = 0; cy < GRID; cy++)
+        {
+            for(int cx = 0; cx < GRID; cx++)
+            {
+                int Sum = 0;
+
+                for(int sy = 0; sy < SAMPLES; sy++)
+                {
+                    int Row = _getPosition(cy, sy, Top, Height) * RowStride;
+
+                    for(int sx = 0; sx < SAMPLES; sx++)
+                    {
+                        Sum += Y.get(Row + _getPosition(cx, sx, Left, Width)) & 0xFF;
+                    }
+                }
+
+                Signature[(cy * GRID) + cx] = (byte)(Sum / (SAMPLES * SAMPLES));
+            }
+        }
+    }
+
+    /**
+     * Get the mean absolute difference of two signatures.
+     * @param A: First signature
+     * @param B: Second signature
+     * @return Mean difference of the luminance values (0 - 255)
+     */
+    public static int distance(@NonNull byte[] A, @NonNull byte[] B)
+    {
+        int Sum = 0;
+
+        for(int i = 0; i < SIZE; i++)
+        {
+            Sum += Math.abs((A[i] & 0xFF) - (B[i] & 0xFF));
+        }
+
+        return Sum / SIZE;
+    }
+}
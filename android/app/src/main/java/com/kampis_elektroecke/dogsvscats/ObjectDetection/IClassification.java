@@ -0,0 +1,22 @@
+package com.kampis_elektroecke.dogsvscats.ObjectDetection;
+
+/**
+ * Callback of an asynchronous classification.
+ */
+public interface IClassification
+{
+    /**
+     * Result of an asynchronous classification. Called on the main thread.
+     * The result object is reused and only valid until the callback returns.
+     * @param Result: Classification result
+     */
+    void onClassificationResult(Classification Result);
+
+    /**
+     * An accepted image was dropped without a result, because no interpreter was free or the model was swapped.
+     * Called on the main thread.
+     */
+    default void onClassificationDropped()
+    {
+    }
+}
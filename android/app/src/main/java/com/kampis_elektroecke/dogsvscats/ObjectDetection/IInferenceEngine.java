@@ -0,0 +1,57 @@
+package com.kampis_elektroecke.dogsvscats.ObjectDetection;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Backend which runs the model for a PooledInterpreter.
+ * The interface has no dependencies to the Android runtime, so the pipeline can run on a desktop JVM with a stand-in engine.
+ */
+public interface IInferenceEngine
+{
+    interface IFactory
+    {
+        /**
+         * Create a new engine. Each interpreter of the pool owns one engine.
+         * @return Engine
+         * @throws IllegalArgumentException: The model uses an unsupported tensor type
+         */
+        IInferenceEngine create();
+    }
+
+    /**
+     * Get the format of the input values.
+     * @return Input format
+     */
+    InputFormat getInputFormat();
+
+    /**
+     * Get the shape of the input tensor for a single image.
+     * @return Input shape in NHWC layout ([1, height, width, channels])
+     */
+    int[] getInputShape();
+
+    /**
+     * Get the number of classes of the output.
+     * @return Class count
+     */
+    int getClassCount();
+
+    /**
+     * Run the model.
+     * @param Input: Input buffer with BatchSize images in the input format
+     * @param BatchSize: Number of images in the input buffer
+     */
+    void run(ByteBuffer Input, int BatchSize);
+
+    /**
+     * Copy the output of one image of the last run as floating point predictions.
+     * @param Index: Index of the image in the batch
+     * @param Output: Array for the predictions for each class
+     */
+    void readOutput(int Index, float[] Output);
+
+    /**
+     * Release the engine.
+     */
+    void close();
+}
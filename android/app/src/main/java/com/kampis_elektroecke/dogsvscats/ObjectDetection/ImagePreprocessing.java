@@ -1,14 +1,41 @@
 package com.kampis_elektroecke.dogsvscats.ObjectDetection;
 
 import android.graphics.Bitmap;
+import android.graphics.ImageFormat;
+import android.graphics.Rect;
+import android.media.Image;
 import androidx.annotation.NonNull;
-import androidx.core.graphics.BitmapCompat;
 
 import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
 
 public class ImagePreprocessing
 {
+    /***
+     * Allocate a direct byte buffer for a floating point model input.
+     * @param Width: Input width
+     * @param Height: Input height
+     * @param Channels: Color channel count
+     * @return Byte buffer in native byte order
+     */
+    public static ByteBuffer allocateInput(int Width, int Height, int Channels)
+    {
+        return allocateInput(Width, Height, Channels, InputFormat.FLOAT);
+    }
+
+    /***
+     * Allocate a direct byte buffer for a model input.
+     * @param Width: Input width
+     * @param Height: Input height
+     * @param Channels: Color channel count
+     * @param Format: Input format
+     * @return Byte buffer in native byte order
+     */
+    public static ByteBuffer allocateInput(int Width, int Height, int Channels, @NonNull InputFormat Format)
+    {
+        return Format.allocate(Width, Height, Channels);
+    }
+
     /***
      * Convert a bitmap image into a byte buffer
      * @param Image: Input bitmap
@@ -17,25 +44,68 @@ public class ImagePreprocessing
      */
     public static ByteBuffer Bitmap2ByteBuffer(@NonNull Bitmap Image, int Channels)
     {
-        ByteBuffer Input;
-        Input = ByteBuffer.allocateDirect(BitmapCompat.getAllocationByteCount(Image) * Channels);
-        Input.order(ByteOrder.nativeOrder());
-
-        Input.rewind();
+        ByteBuffer Input = allocateInput(Image.getWidth(), Image.getHeight(), Channels);
         int[] Pixel = new int[Image.getWidth() * Image.getHeight()];
+
+        Bitmap2ByteBuffer(Image, Channels, Pixel, Input);
+
+        return Input;
+    }
+
+    /***
+     * Convert a bitmap image into a caller owned byte buffer without allocating memory.
+     * @param Image: Input bitmap
+     * @param Channels: Color channel count
+     * @param Pixel: Scratch array for the pixels. Needs at least width * height entries
+     * @param Output: Byte buffer for the floating point image data. Needs at least 4 * width * height * channels bytes
+     */
+    public static void Bitmap2ByteBuffer(@NonNull Bitmap Image, int Channels, @NonNull int[] Pixel, @NonNull ByteBuffer Output)
+    {
+        Bitmap2ByteBuffer(Image, Channels, Pixel, Output, InputFormat.FLOAT.createFloatView(Output), InputFormat.FLOAT);
+    }
+
+    /***
+     * Convert a bitmap image into a caller owned byte buffer without allocating memory.
+     * @param Image: Input bitmap
+     * @param Channels: Color channel count
+     * @param Pixel: Scratch array for the pixels. Needs at least width * height entries
+     * @param Output: Byte buffer for the image data
+     * @param Floats: Float view of the byte buffer from InputFormat.createFloatView or null for a quantized input
+     * @param Format: Input format of the model
+     */
+    public static void Bitmap2ByteBuffer(@NonNull Bitmap Image, int Channels, @NonNull int[] Pixel, @NonNull ByteBuffer Output, FloatBuffer Floats, @NonNull InputFormat Format)
+    {
         Image.getPixels(Pixel, 0, Image.getWidth(), 0, 0, Image.getWidth(), Image.getHeight());
 
-        int j = 0;
-        for(int i = 0; i < Pixel.length * Channels; i = i + 3)
-        {
-            for(int k = (Channels - 1); k >= 0; k--)
-            {
-                Input.putFloat((((Pixel[j] >> 8 * k) & 0xFF)) / 1.0f);
-            }
+        PixelKernels.Pixels2ByteBuffer(Pixel, Image.getWidth() * Image.getHeight(), Channels, Output, Floats, Format);
+    }
 
-            j++;
+    /***
+     * Convert the region of interest of a YUV_420_888 camera image into a caller owned byte buffer.
+     * Color conversion, crop and resize (nearest neighbor) are done in a single pass.
+     * @param Frame: Camera image in YUV_420_888 format
+     * @param ROI: Region of interest in image coordinates
+     * @param Width: Output width
+     * @param Height: Output height
+     * @param Channels: Color channel count
+     * @param Output: Byte buffer for the image data
+     * @param Floats: Float view of the byte buffer from InputFormat.createFloatView or null for a quantized input
+     * @param Format: Input format of the model
+     */
+    public static void YUV2ByteBuffer(@NonNull Image Frame, @NonNull Rect ROI, int Width, int Height, int Channels,
+                                      @NonNull ByteBuffer Output, FloatBuffer Floats, @NonNull InputFormat Format)
+    {
+        if(Frame.getFormat() != ImageFormat.YUV_420_888)
+        {
+            throw new IllegalArgumentException("Unsupported image format: " + Frame.getFormat());
         }
 
-        return Input;
+        Image.Plane[] Planes = Frame.getPlanes();
+
+        PixelKernels.YUV2ByteBuffer(Planes[0].getBuffer(), Planes[1].getBuffer(), Planes[2].getBuffer(),
+                Planes[0].getRowStride(), Planes[1].getRowStride(), Planes[1].getPixelStride(),
+                ROI.left, ROI.top, ROI.width(), ROI.height(),
+                Width, Height, Channels, Output, Floats, Format
+        );
     }
 }
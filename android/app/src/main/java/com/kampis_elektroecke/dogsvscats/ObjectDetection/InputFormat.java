@@ -0,0 +1,221 @@
+package com.kampis_elektroecke.dogsvscats.ObjectDetection;
+
+import androidx.annotation.NonNull;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+public class InputFormat
+{
+    /**
+     * Floating point input with the raw color values.
+     */
+    public static final InputFormat FLOAT = Float(Normalization.IDENTITY);
+
+    /**
+     * Number of pixels which are converted before they are written into the input buffer with a single bulk put.
+     */
+    private static final int CHUNK_PIXELS = 256;
+
+    private static final ThreadLocal<float[]> _FLOATS = ThreadLocal.withInitial(() -> new float[CHUNK_PIXELS * 3]);
+    private static final ThreadLocal<byte[]> _BYTES = ThreadLocal.withInitial(() -> new byte[CHUNK_PIXELS * 3]);
+
+    /**
+     * Quantized input values for each color component (blue, green, red) and the 256 color values or null for a floating point input.
+     */
+    private final byte[][] _mTables;
+
+    /**
+     * Floating point input values for each color component (blue, green, red) and the 256 color values or null for a quantized input.
+     */
+    private final float[][] _mFloatTables;
+
+    private final boolean _mIsBGR;
+
+    /**
+     * Create the format for a floating point input.
+     * @param Normalization: Normalization of the color values
+     * @return Input format
+     */
+    public static InputFormat Float(@NonNull Normalization Normalization)
+    {
+        float[][] Tables = new float[3][256];
+        for(int k = 0; k < 3; k++)
+        {
+            for(int i = 0; i < 256; i++)
+            {
+                Tables[k][i] = Normalization.apply(k, i);
+            }
+        }
+
+        return new InputFormat(null, Tables, Normalization.isBGR());
+    }
+
+    /**
+     * Create the format for a quantized input with the raw color values.
+     * Each color value is quantized with q = round(value / scale) + zero point.
+     * @param Scale: Quantization scale of the input tensor
+     * @param ZeroPoint: Quantization zero point of the input tensor
+     * @param Signed: true for INT8, false for UINT8
+     * @return Input format
+     */
+    public static InputFormat Quantized(float Scale, int ZeroPoint, boolean Signed)
+    {
+        return Quantized(Scale, ZeroPoint, Signed, Normalization.IDENTITY);
+    }
+
+    /**
+     * Create the format for a quantized input.
+     * Each color value is normalized and quantized with q = round(normalized value / scale) + zero point.
+     * @param Scale: Quantization scale of the input tensor
+     * @param ZeroPoint: Quantization zero point of the input tensor
+     * @param Signed: true for INT8, false for UINT8
+     * @param Normalization: Normalization of the color values
+     * @return Input format
+     */
+    public static InputFormat Quantized(float Scale, int ZeroPoint, boolean Signed, @NonNull Normalization Normalization)
+    {
+        int Min = Signed ? -128 : 0;
+        int Max = Signed ? 127 : 255;
+
+        // A scale of 0 means that the tensor has no quantization parameters
+        if(Scale == 0.0f)
+        {
+            Scale = 1.0f;
+        }
+
+        byte[][] Tables = new byte[3][256];
+        for(int k = 0; k < 3; k++)
+        {
+            for(int i = 0; i < 256; i++)
+            {
+                int Value = Math.round(Normalization.apply(k, i) / Scale) + ZeroPoint;
+
+                Tables[k][i] = (byte)Math.max(Min, Math.min(Max, Value));
+            }
+        }
+
+        return new InputFormat(Tables, null, Normalization.isBGR());
+    }
+
+    /**
+     * Constructor.
+     * @param Tables: Quantization tables or null for a floating point input
+     * @param FloatTables: Floating point tables or null for a quantized input
+     * @param BGR: true to write the channels in BGR order
+     */
+    private InputFormat(byte[][] Tables, float[][] FloatTables, boolean BGR)
+    {
+        _mTables = Tables;
+        _mFloatTables = FloatTables;
+        _mIsBGR = BGR;
+    }
+
+    /**
+     * Check if the input is quantized.
+     * @return true if the input is quantized
+     */
+    public boolean isQuantized()
+    {
+        return (_mTables != null);
+    }
+
+    /**
+     * Get the size of a single input value.
+     * @return Bytes per value
+     */
+    public int getBytesPerValue()
+    {
+        return (_mTables != null) ? 1 : 4;
+    }
+
+    /**
+     * Allocate a direct byte buffer for a model input in this format.
+     * @param Width: Input width
+     * @param Height: Input height
+     * @param Channels: Color channel count
+     * @return Byte buffer in native byte order
+     */
+    public ByteBuffer allocate(int Width, int Height, int Channels)
+    {
+        ByteBuffer Input = ByteBuffer.allocateDirect(getBytesPerValue() * Width * Height * Channels);
+        Input.order(ByteOrder.nativeOrder());
+
+        return Input;
+    }
+
+    /**
+     * Create the float view of an input buffer for the bulk puts of a floating point input.
+     * The view is created once by the owner of the buffer, so the conversion of a frame doesn't allocate memory.
+     * @param Input: Input buffer. The view starts at the beginning of the buffer
+     * @return Float view or null for a quantized input
+     */
+    public FloatBuffer createFloatView(@NonNull ByteBuffer Input)
+    {
+        if(isQuantized())
+        {
+            return null;
+        }
+
+        ByteBuffer Source = Input.duplicate().order(Input.order());
+        Source.rewind();
+
+        return Source.asFloatBuffer();
+    }
+
+    /**
+     * Write ARGB pixels into the input buffer. The values are read from the lookup tables and written in chunks
+     * with bulk puts, for a floating point input through the float view of the buffer.
+     * @param Pixels: ARGB pixels
+     * @param Offset: Index of the first pixel
+     * @param Count: Number of pixels
+     * @param Channels: Color channel count
+     * @param Output: Input buffer. The position is advanced for a quantized input
+     * @param Floats: Float view of the input buffer for a floating point input, which is advanced instead of the input buffer. Ignored for a quantized input
+     */
+    public void putPixels(@NonNull int[] Pixels, int Offset, int Count, int Channels, @NonNull ByteBuffer Output, FloatBuffer Floats)
+    {
+        // Byte of the color component in the ARGB pixel for each channel. A single channel uses the blue component
+        int First = _mIsBGR ? 0 : (Channels - 1);
+        int Step = _mIsBGR ? 1 : -1;
+
+        int End = Offset + Count;
+        while(Offset < End)
+        {
+            int Length = Math.min(CHUNK_PIXELS, End - Offset);
+            int n = 0;
+
+            if(_mTables != null)
+            {
+                byte[] Values = _BYTES.get();
+                for(int j = Offset; j < (Offset + Length); j++)
+                {
+                    int Pixel = Pixels[j];
+                    for(int i = 0, k = First; i < Channels; i++, k += Step)
+                    {
+                        Values[n++] = _mTables[k][(Pixel >> (8 * k)) & 0xFF];
+                    }
+                }
+
+                Output.put(Values, 0, n);
+            }
+            else
+            {
+                float[] Values = _FLOATS.get();
+                for(int j = Offset; j < (Offset + Length); j++)
+                {
+                    int Pixel = Pixels[j];
+                    for(int i = 0, k = First; i < Channels; i++, k += Step)
+                    {
+                        Values[n++] = _mFloatTables[k][(Pixel >> (8 * k)) & 0xFF];
+                    }
+                }
+
+                Floats.put(Values, 0, n);
+            }
+
+            Offset += Length;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.kampis_elektroecke.dogsvscats.ObjectDetection;
+
+import android.graphics.Bitmap;
+import android.graphics.Rect;
+import android.media.Image;
+
+import androidx.annotation.NonNull;
+
+import com.kampis_elektroecke.dogsvscats.Profiling.Profiler;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.util.List;
+
+/**
+ * Android entry points of a pooled interpreter. Converts bitmaps and camera images into the input buffers
+ * of the interpreter and records the stage latencies, so the interpreter itself only depends on plain Java.
+ */
+public class InterpreterAdapter
+{
+    private InterpreterAdapter()
+    {
+    }
+
+    /**
+     * Copy a bitmap into the input buffer of an interpreter. The bitmap is scaled if it doesn't match the model input.
+     * @param Interpreter: Interpreter
+     * @param InputImage: Input image
+     */
+    public static void preprocess(@NonNull PooledInterpreter Interpreter, @NonNull Bitmap InputImage)
+    {
+        preprocess(Interpreter, InputImage, Interpreter.getInput(), Interpreter.getInputFloats());
+    }
+
+    /**
+     * Copy a bitmap into an input buffer. The bitmap is scaled if it doesn't match the model input.
+     * @param Interpreter: Interpreter
+     * @param InputImage: Input image
+     * @param Target: Input buffer
+     * @param Floats: Float view of the input buffer or null for a quantized input
+     */
+    public static void preprocess(@NonNull PooledInterpreter Interpreter, @NonNull Bitmap InputImage, @NonNull ByteBuffer Target, FloatBuffer Floats)
+    {
+        ModelDescriptor Descriptor = Interpreter.getDescriptor();
+
+        long Start = Profiler.begin(Profiler.Stage.PREPROCESS);
+
+        if((InputImage.getWidth() != Descriptor.getInputWidth()) || (InputImage.getHeight() != Descriptor.getInputHeight()))
+        {
+            InputImage = Bitmap.createScaledBitmap(InputImage, Descriptor.getInputWidth(), Descriptor.getInputHeight(), true);
+        }
+
+        ImagePreprocessing.Bitmap2ByteBuffer(InputImage, Descriptor.getInputChannels(), Interpreter.getPixels(), Target, Floats, Descriptor.getInputFormat());
+        Profiler.end(Profiler.Stage.PREPROCESS, Start);
+    }
+
+    /**
+     * Copy the region of interest of a YUV_420_888 camera image into the input buffer of an interpreter.
+     * @param Interpreter: Interpreter
+     * @param Frame: Camera image in YUV_420_888 format
+     * @param ROI: Region of interest in image coordinates
+     */
+    public static void preprocess(@NonNull PooledInterpreter Interpreter, @NonNull Image Frame, @NonNull Rect ROI)
+    {
+        ModelDescriptor Descriptor = Interpreter.getDescriptor();
+
+        long Start = Profiler.begin(Profiler.Stage.PREPROCESS);
+        ImagePreprocessing.YUV2ByteBuffer(Frame, ROI, Descriptor.getInputWidth(), Descriptor.getInputHeight(),
+                Descriptor.getInputChannels(), Interpreter.getInput(), Interpreter.getInputFloats(), Descriptor.getInputFormat());
+        Profiler.end(Profiler.Stage.PREPROCESS, Start);
+    }
+
+    /**
+     * Run the model with the input buffer of an interpreter and update the result.
+     * @param Interpreter: Interpreter
+     */
+    public static void run(@NonNull PooledInterpreter Interpreter)
+    {
+        long Start = Profiler.begin(Profiler.Stage.INFERENCE);
+        Interpreter.run();
+        Profiler.end(Profiler.Stage.INFERENCE, Start);
+
+        Start = Profiler.begin(Profiler.Stage.POSTPROCESS);
+        Interpreter.readResult();
+        Profiler.end(Profiler.Stage.POSTPROCESS, Start);
+    }
+
+    /**
+     * Run the model with a caller owned input buffer. The result of the interpreter isn't changed.
+     * @param Interpreter: Interpreter
+     * @param Input: Preprocessed model input
+     * @param Output: Array for the floating point predictions for each class
+     */
+    public static void run(@NonNull PooledInterpreter Interpreter, @NonNull ByteBuffer Input, @NonNull float[] Output)
+    {
+        long Start = Profiler.begin(Profiler.Stage.INFERENCE);
+        Interpreter.run(Input);
+        Profiler.end(Profiler.Stage.INFERENCE, Start);
+
+        Start = Profiler.begin(Profiler.Stage.POSTPROCESS);
+        Interpreter.readOutput(Output);
+        Profiler.end(Profiler.Stage.POSTPROCESS, Start);
+    }
+
+    /**
+     * Classify several bitmaps with a single interpreter invocation.
+     * @param Interpreter: Interpreter
+     * @param Images: Input images
+     * @param Results: Array for the floating point predictions. One row with the predictions for each class per image
+     */
+    public static void runBatch(@NonNull PooledInterpreter Interpreter, @NonNull List<Bitmap> Images, @NonNull float[][] Results)
+    {
+        int BatchSize = Images.size();
+
+        ByteBuffer[] Inputs = Interpreter.getBatchInputs(BatchSize);
+        FloatBuffer[] Floats = Interpreter.getBatchFloats();
+        for(int i = 0; i < BatchSize; i++)
+        {
+            preprocess(Interpreter, Images.get(i), Inputs[i], Floats[i]);
+        }
+
+        Interpreter.runBatch(BatchSize, Results);
+    }
+
+    /**
+     * Use a cached result for the current signature of an interpreter.
+     * @param Interpreter: Interpreter
+     * @param Cache: Result cache
+     * @return true if the result was taken from the cache. The model doesn't need to run in this case
+     */
+    public static boolean lookup(@NonNull PooledInterpreter Interpreter, @NonNull ResultCache Cache)
+    {
+        Classification Result = Interpreter.getResult();
+
+        if(Cache.lookup(Interpreter.getSignature(), Result.getProbabilities()))
+        {
+            Result.update();
+
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Store the result of the last run of an interpreter with its current signature.
+     * @param Interpreter: Interpreter
+     * @param Cache: Result cache
+     */
+    public static void store(@NonNull PooledInterpreter Interpreter, @NonNull ResultCache Cache)
+    {
+        Cache.put(Interpreter.getSignature(), Interpreter.getResult().getProbabilities());
+    }
+}
@@ -0,0 +1,114 @@
+package com.kampis_elektroecke.dogsvscats.ObjectDetection;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+public class InterpreterPool
+{
+    private final List<PooledInterpreter> _mInterpreters;
+
+    private final BlockingQueue<PooledInterpreter> _mIdle;
+
+    /**
+     * Constructor. Each interpreter gets its own engine from the factory.
+     * @param Factory: Factory for the inference engines
+     * @param Size: Number of interpreters
+     * @param TopK: Number of top classes of each result
+     * @throws IllegalArgumentException: The model uses an unsupported tensor type or shape
+     */
+    public InterpreterPool(@NonNull IInferenceEngine.IFactory Factory, int Size, int TopK)
+    {
+        _mInterpreters = new ArrayList<>(Size);
+        _mIdle = new ArrayBlockingQueue<>(Size);
+
+        try
+        {
+            for(int i = 0; i < Size; i++)
+            {
+                PooledInterpreter Interpreter = new PooledInterpreter(Factory, TopK);
+
+                _mInterpreters.add(Interpreter);
+                _mIdle.add(Interpreter);
+            }
+        }
+        catch(IllegalArgumentException e)
+        {
+            close();
+
+            throw e;
+        }
+    }
+
+    /**
+     * Check out an interpreter. Waits until an interpreter is returned if all interpreters are in use.
+     * @return Interpreter
+     * @throws InterruptedException: The thread was interrupted while waiting
+     */
+    public PooledInterpreter acquire() throws InterruptedException
+    {
+        return _mIdle.take();
+    }
+
+    /**
+     * Check out an interpreter without waiting.
+     * @return Interpreter or null if all interpreters are in use
+     */
+    public PooledInterpreter tryAcquire()
+    {
+        return _mIdle.poll();
+    }
+
+    /**
+     * Return a checked out interpreter to the pool.
+     * @param Interpreter: Interpreter from acquire or tryAcquire
+     */
+    public void release(@NonNull PooledInterpreter Interpreter)
+    {
+        _mIdle.offer(Interpreter);
+    }
+
+    /**
+     * Get the number of interpreters.
+     * @return Pool size
+     */
+    public int getSize()
+    {
+        return _mInterpreters.size();
+    }
+
+    /**
+     * Get the geometry of the model. All interpreters use the same model.
+     * @return Model descriptor
+     */
+    public ModelDescriptor getDescriptor()
+    {
+        return _mInterpreters.get(0).getDescriptor();
+    }
+
+    /**
+     * Get the number of classes of the model.
+     * @return Class count
+     */
+    public int getClassCount()
+    {
+        return getDescriptor().getClassCount();
+    }
+
+    /**
+     * Release all interpreters. All interpreters must be returned before.
+     */
+    public void close()
+    {
+        for(PooledInterpreter Interpreter : _mInterpreters)
+        {
+            Interpreter.close();
+        }
+
+        _mInterpreters.clear();
+        _mIdle.clear();
+    }
+}
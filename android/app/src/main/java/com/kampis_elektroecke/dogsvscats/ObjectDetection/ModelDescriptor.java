@@ -0,0 +1,123 @@
+package com.kampis_elektroecke.dogsvscats.ObjectDetection;
+
+import androidx.annotation.NonNull;
+
+import java.util.Locale;
+
+/**
+ * Input and output geometry of a loaded model. The values are read from the tensors of the model,
+ * so the buffers of the preprocessing and the camera always match the model.
+ */
+public final class ModelDescriptor
+{
+    private final int _mInputWidth;
+    private final int _mInputHeight;
+    private final int _mInputChannels;
+
+    private final InputFormat _mInputFormat;
+
+    private final int _mClassCount;
+
+    /**
+     * Create the descriptor from the tensors of an engine.
+     * @param Engine: Inference engine with the loaded model
+     * @return Model descriptor
+     * @throws IllegalArgumentException: The input isn't an image in NHWC layout with 1 - 3 channels
+     */
+    public static ModelDescriptor fromEngine(@NonNull IInferenceEngine Engine)
+    {
+        int[] Shape = Engine.getInputShape();
+
+        if((Shape.length != 4) || (Shape[1] < 1) || (Shape[2] < 1) || (Shape[3] < 1) || (Shape[3] > 3))
+        {
+            StringBuilder Text = new StringBuilder();
+            for(int Dimension : Shape)
+            {
+                Text.append((Text.length() > 0) ? "x" : "").append(Dimension);
+            }
+
+            throw new IllegalArgumentException("Unsupported input shape: " + Text);
+        }
+
+        return new ModelDescriptor(Shape[2], Shape[1], Shape[3], Engine.getInputFormat(), Engine.getClassCount());
+    }
+
+    /**
+     * Constructor.
+     * @param Width: Input width
+     * @param Height: Input height
+     * @param Channels: Input channels
+     * @param Format: Format of the input values
+     * @param Classes: Number of classes of the output
+     */
+    public ModelDescriptor(int Width, int Height, int Channels, @NonNull InputFormat Format, int Classes)
+    {
+        _mInputWidth = Width;
+        _mInputHeight = Height;
+        _mInputChannels = Channels;
+        _mInputFormat = Format;
+        _mClassCount = Classes;
+    }
+
+    /**
+     * Get the width of the model input.
+     * @return Input width
+     */
+    public int getInputWidth()
+    {
+        return _mInputWidth;
+    }
+
+    /**
+     * Get the height of the model input.
+     * @return Input height
+     */
+    public int getInputHeight()
+    {
+        return _mInputHeight;
+    }
+
+    /**
+     * Get the number of color channels of the model input.
+     * @return Input channels
+     */
+    public int getInputChannels()
+    {
+        return _mInputChannels;
+    }
+
+    /**
+     * Get the format of the input values.
+     * @return Input format
+     */
+    public InputFormat getInputFormat()
+    {
+        return _mInputFormat;
+    }
+
+    /**
+     * Get the size of the input buffer for a single image.
+     * @return Input size in bytes
+     */
+    public int getInputBytes()
+    {
+        return _mInputFormat.getBytesPerValue() * _mInputWidth * _mInputHeight * _mInputChannels;
+    }
+
+    /**
+     * Get the number of classes of the model output.
+     * @return Class count
+     */
+    public int getClassCount()
+    {
+        return _mClassCount;
+    }
+
+    @Override
+    @NonNull
+    public String toString()
+    {
+        return String.format(Locale.US, "%dx%dx%d %s, %d classes", _mInputWidth, _mInputHeight, _mInputChannels,
+                             _mInputFormat.isQuantized() ? "quantized" : "float", _mClassCount);
+    }
+}
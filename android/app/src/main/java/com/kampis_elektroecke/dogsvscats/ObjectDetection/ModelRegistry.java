@@ -0,0 +1,258 @@
+package com.kampis_elektroecke.dogsvscats.ObjectDetection;
+
+import android.content.Context;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+public final class ModelRegistry
+{
+    private static class Entry
+    {
+        final String Key;
+        final ObjectDetection Detection;
+        final Runnable CloseTask;
+        int References;
+        long Version;
+
+        /**
+         * Constructor.
+         * @param Key: Registry key
+         * @param Detection: Shared object detection
+         */
+        Entry(@NonNull String Key, @NonNull ObjectDetection Detection)
+        {
+            this.Key = Key;
+            this.Detection = Detection;
+            this.CloseTask = () -> _closeUnused(this);
+        }
+    }
+
+    /**
+     * Settings which change the loaded model. Handles with different values for these settings get separate instances.
+     */
+    private static final String[] MODEL_SETTINGS = new String[] {"Threads", "UseNNAPI", "AutoTune", "Interpreters", "FrameCache",
+                                                                  "SyntheticEngine", "SyntheticLatency"};
+
+    /**
+     * Time a model without users stays loaded, so that fragment switches and configuration changes can reuse it.
+     */
+    private static final long RELEASE_DELAY_MS = 30000;
+
+    /**
+     * Updated model and labels, e.g. a retrained model from app.py which was copied to the external files directory of the app.
+     * The mean file of the training set has to be copied too, otherwise the update is ignored.
+     */
+    private static final String UPDATE_MODEL = "Model.tflite";
+    private static final String UPDATE_LABEL = "Label.txt";
+    private static final String UPDATE_MEAN = "CatsVsDogs_mean.json";
+
+    private static final Map<String, Entry> _mEntries = new HashMap<>();
+
+    private static final Map<ObjectDetection, Entry> _mHandles = new HashMap<>();
+
+    private static final Handler _mHandler = new Handler(Looper.getMainLooper());
+
+    private ModelRegistry()
+    {
+    }
+
+    /**
+     * Create the registry key for a model and the settings which are used to load it.
+     * @param ModelPath: Path to TensorFlow Lite model
+     * @param LabelPath: Path to labels as text file
+     * @param Settings: Bundle with settings
+     * @return Registry key
+     */
+    private static String _getKey(@NonNull String ModelPath, @NonNull String LabelPath, @NonNull Bundle Settings)
+    {
+        StringBuilder Key = new StringBuilder(ModelPath).append('|').append(LabelPath);
+
+        for(String Setting : MODEL_SETTINGS)
+        {
+            Key.append('|').append(Settings.get(Setting));
+        }
+
+        return Key.toString();
+    }
+
+    /**
+     * Get the updated model from the external files directory.
+     * @param context: Current context
+     * @return Model and label file or null if no complete update with the mean file is available
+     */
+    private static File[] _getUpdate(@NonNull Context context)
+    {
+        File Directory = context.getExternalFilesDir(null);
+        if(Directory == null)
+        {
+            return null;
+        }
+
+        File Model = new File(Directory, UPDATE_MODEL);
+        File Labels = new File(Directory, UPDATE_LABEL);
+        if(!Model.isFile() || !Labels.isFile())
+        {
+            return null;
+        }
+
+        // The model input isn't normalized like the training data without the means
+        if(!new File(Directory, UPDATE_MEAN).isFile())
+        {
+            Log.w("ModelRegistry", "Ignoring the updated model, because " + UPDATE_MEAN + " is missing!");
+
+            return null;
+        }
+
+        return new File[] {Model, Labels};
+    }
+
+    /**
+     * Close a model if no handle was acquired since the last release.
+     * @param Model: Registry entry
+     */
+    private static synchronized void _closeUnused(@NonNull Entry Model)
+    {
+        if((Model.References == 0) && _mHandles.containsKey(Model.Detection))
+        {
+            _remove(Model);
+        }
+    }
+
+    /**
+     * Remove a model from the registry and release the interpreters.
+     * @param Model: Registry entry
+     */
+    private static void _remove(@NonNull Entry Model)
+    {
+        _mHandler.removeCallbacks(Model.CloseTask);
+        _mEntries.remove(Model.Key, Model);
+        _mHandles.remove(Model.Detection);
+        Model.Detection.close();
+
+        Log.i("ModelRegistry", "Released " + Model.Key);
+    }
+
+    /**
+     * Get a shared handle for a model. The model is loaded with the first handle and reused by all
+     * further handles with the same model, labels and model settings. A model which failed to load is loaded again.
+     * Listeners which are added after the model was loaded don't receive onModelReady, so check getIsModelReady.
+     * @param context: Current context
+     * @param ModelPath: Path to TensorFlow Lite model
+     * @param LabelPath: Path to labels as text file
+     * @param Settings: Bundle with settings
+     * @return Shared object detection. Must be returned with release
+     */
+    public static synchronized ObjectDetection acquire(@NonNull Context context, @NonNull String ModelPath, @NonNull String LabelPath, @NonNull Bundle Settings)
+    {
+        String Key = _getKey(ModelPath, LabelPath, Settings);
+
+        Entry Model = _mEntries.get(Key);
+        if((Model != null) && !Model.Detection.getError().equals(ObjectDetection.IObjectDetection.NO_ERROR))
+        {
+            // Load the model again. The failed instance is closed when the last user returns it
+            _mEntries.remove(Key);
+            if(Model.References == 0)
+            {
+                _remove(Model);
+            }
+
+            Model = null;
+        }
+
+        if(Model == null)
+        {
+            // Start with the latest update, if available
+            File[] Update = _getUpdate(context);
+            String Path = (Update != null) ? Update[0].getAbsolutePath() : ModelPath;
+            String Labels = (Update != null) ? Update[1].getAbsolutePath() : LabelPath;
+
+            // Use the application context, because the model can outlive the fragment and the activity
+            Model = new Entry(Key, new ObjectDetection(context.getApplicationContext(), Path, Labels, Settings));
+            Model.Version = (Update != null) ? Math.max(Update[0].lastModified(), Update[1].lastModified()) : 0;
+            _mEntries.put(Key, Model);
+            _mHandles.put(Model.Detection, Model);
+
+            Log.i("ModelRegistry", "Loading " + Key);
+        }
+
+        _mHandler.removeCallbacks(Model.CloseTask);
+        Model.References++;
+
+        return Model.Detection;
+    }
+
+    /**
+     * Return a handle. The model is closed a short time after the last handle was returned.
+     * @param Detection: Handle from acquire
+     */
+    public static synchronized void release(@NonNull ObjectDetection Detection)
+    {
+        Entry Model = _mHandles.get(Detection);
+        if(Model == null)
+        {
+            Log.e("ModelRegistry", "Release of an unknown model!");
+
+            return;
+        }
+
+        if(--Model.References == 0)
+        {
+            // Replaced models aren't reused and are closed immediately
+            if(_mEntries.get(Model.Key) == Model)
+            {
+                _mHandler.postDelayed(Model.CloseTask, RELEASE_DELAY_MS);
+            }
+            else
+            {
+                _remove(Model);
+            }
+        }
+    }
+
+    /**
+     * Check for an updated model and swap it into all loaded models. The current models keep classifying
+     * until the update is loaded and warmed up.
+     * @param context: Current context
+     */
+    public static synchronized void update(@NonNull Context context)
+    {
+        File[] Update = _getUpdate(context);
+        if(Update == null)
+        {
+            return;
+        }
+
+        long Version = Math.max(Update[0].lastModified(), Update[1].lastModified());
+        for(Entry Model : _mEntries.values())
+        {
+            if(Model.Version < Version)
+            {
+                Model.Version = Version;
+                Model.Detection.swapModel(Update[0].getAbsolutePath(), Update[1].getAbsolutePath());
+            }
+        }
+    }
+
+    /**
+     * Close all models which have no users, e.g. if the system is low on memory.
+     */
+    public static synchronized void trim()
+    {
+        for(Entry Model : new ArrayList<>(_mEntries.values()))
+        {
+            if(Model.References == 0)
+            {
+                _remove(Model);
+            }
+        }
+    }
+}
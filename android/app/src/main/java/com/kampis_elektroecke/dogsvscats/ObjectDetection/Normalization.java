@@ -0,0 +1,70 @@
+package com.kampis_elektroecke.dogsvscats.ObjectDetection;
+
+import androidx.annotation.NonNull;
+
+import java.util.Locale;
+
+/**
+ * Normalization of the color values of the model input: value' = (value - mean) * scale for each channel
+ * and the order of the channels. The normalization is compiled into the lookup tables of the input format,
+ * so it costs nothing per pixel.
+ */
+public final class Normalization
+{
+    /**
+     * Raw color values in RGB order.
+     */
+    public static final Normalization IDENTITY = new Normalization(new float[] {0.0f, 0.0f, 0.0f}, new float[] {1.0f, 1.0f, 1.0f}, false);
+
+    private final float[] _mMean;
+    private final float[] _mScale;
+
+    private final boolean _mIsBGR;
+
+    /**
+     * Constructor.
+     * @param Mean: Mean of the red, green and blue channel
+     * @param Scale: Scale of the red, green and blue channel, applied after the mean subtraction
+     * @param BGR: true to write the channels in BGR order (OpenCV), false for RGB order
+     * @throws IllegalArgumentException: The mean or the scale doesn't have three values
+     */
+    public Normalization(@NonNull float[] Mean, @NonNull float[] Scale, boolean BGR)
+    {
+        if((Mean.length != 3) || (Scale.length != 3))
+        {
+            throw new IllegalArgumentException("Mean and scale need a value for each color channel");
+        }
+
+        _mMean = Mean.clone();
+        _mScale = Scale.clone();
+        _mIsBGR = BGR;
+    }
+
+    /**
+     * Get the normalized value of a color value.
+     * @param Component: Color component (0 = blue, 1 = green, 2 = red), which is also the byte of the component in an ARGB pixel
+     * @param Value: Color value (0 - 255)
+     * @return Normalized value
+     */
+    public float apply(int Component, int Value)
+    {
+        return (Value - _mMean[2 - Component]) * _mScale[2 - Component];
+    }
+
+    /**
+     * Check if the channels are written in BGR order.
+     * @return true for BGR order, false for RGB order
+     */
+    public boolean isBGR()
+    {
+        return _mIsBGR;
+    }
+
+    @Override
+    @NonNull
+    public String toString()
+    {
+        return String.format(Locale.US, "%s, mean %.2f/%.2f/%.2f, scale %.4f/%.4f/%.4f", _mIsBGR ? "BGR" : "RGB",
+                             _mMean[0], _mMean[1], _mMean[2], _mScale[0], _mScale[1], _mScale[2]);
+    }
+}
@@ -1,27 +1,45 @@
 package com.kampis_elektroecke.dogsvscats.ObjectDetection;
 
+import android.content.Context;
+import android.content.SharedPreferences;
 import android.content.res.AssetFileDescriptor;
 import android.content.res.AssetManager;
 import android.graphics.Bitmap;
+import android.graphics.Rect;
+import android.media.Image;
 import android.os.AsyncTask;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
 
+import com.kampis_elektroecke.dogsvscats.Profiling.Profiler;
+import com.kampis_elektroecke.dogsvscats.Profiling.Tracer;
+
+import org.json.JSONException;
+import org.json.JSONObject;
 import org.tensorflow.lite.Interpreter;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.lang.ref.WeakReference;
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class ObjectDetection
 {
@@ -37,10 +55,85 @@ public class ObjectDetection
         void onModelReady();
     }
 
+    private static class Model
+    {
+        final InterpreterPool Pool;
+        final ModelDescriptor Descriptor;
+        /**
+         * Results of camera frames by the luminance signature of the region of interest. Still images and bitmaps
+         * never use the cache, because a similar signature of an unrelated image would return the wrong result.
+         */
+        final ResultCache Cache;
+        final ArrayList<String> Labels;
+        final AutoTuner.Configuration Tuning;
+
+        private int _mUsers;
+
+        private boolean _mIsRetired;
+
+        /**
+         * Constructor.
+         * @param Pool: Warmed up interpreters
+         * @param Cache: Result cache for camera frames or null
+         * @param Labels: Class labels
+         * @param Tuning: Configuration from the auto tuning or null
+         */
+        Model(@NonNull InterpreterPool Pool, ResultCache Cache, @NonNull ArrayList<String> Labels, AutoTuner.Configuration Tuning)
+        {
+            this.Pool = Pool;
+            this.Descriptor = Pool.getDescriptor();
+            this.Cache = Cache;
+            this.Labels = Labels;
+            this.Tuning = Tuning;
+        }
+
+        /**
+         * Register a user of the model.
+         * @return false if the model was replaced and must not be used anymore
+         */
+        synchronized boolean enter()
+        {
+            if(_mIsRetired)
+            {
+                return false;
+            }
+
+            _mUsers++;
+
+            return true;
+        }
+
+        /**
+         * Unregister a user. The last user of a replaced model releases the interpreters.
+         */
+        synchronized void leave()
+        {
+            if((--_mUsers == 0) && _mIsRetired)
+            {
+                Pool.close();
+            }
+        }
+
+        /**
+         * Mark the model as replaced. The interpreters are released as soon as all users have left.
+         */
+        synchronized void retire()
+        {
+            _mIsRetired = true;
+
+            if(_mUsers == 0)
+            {
+                Pool.close();
+            }
+        }
+    }
+
     private static class Loader extends AsyncTask<String, String, Long>
     {
         private WeakReference<ObjectDetection> _mReference;
 
+        private Model _mModel;
+
         /**
          * Constructor.
          * @param context: Reference to parent object
@@ -58,8 +151,22 @@ public class ObjectDetection
         protected Long doInBackground(String... stringParams)
         {
             ObjectDetection Reference = _mReference.get();
+            if(Reference == null)
+            {
+                return IObjectDetection.MODEL_ERROR;
+            }
+
+            // The labels are loaded first, because the model checks the label count against its classes
+            ArrayList<String> Labels = new ArrayList<>();
+            Long ErrorCode = Reference._loadLabel(stringParams[1], Labels);
+
+            _mModel = Reference._loadModel(stringParams[0], Labels);
+            if(_mModel == null)
+            {
+                ErrorCode |= IObjectDetection.MODEL_ERROR;
+            }
 
-            return (Reference._loadModel(stringParams[0]) | Reference._loadLabel(stringParams[1]));
+            return ErrorCode;
         }
 
         @Override
@@ -76,42 +183,105 @@ public class ObjectDetection
         {
             ObjectDetection Reference = _mReference.get();
 
-            if(Result.equals(IObjectDetection.NO_ERROR))
+            // Release the new model if it can't be used
+            if((Reference == null) || Reference._mIsClosed || !Result.equals(IObjectDetection.NO_ERROR))
             {
-                Reference._mOutput = new float[1][Reference._mClassLabels.size()];
+                if(_mModel != null)
+                {
+                    _mModel.retire();
+                }
 
-                // Perform an empty prediction, because the first result is wrong
-                // when the Android NN API is used
-                Reference._mTfLite.run(Reference._mInput, Reference._mOutput);
+                if((Reference != null) && !Reference._mIsClosed)
+                {
+                    // A failed update keeps the current model
+                    if(Reference._mModel == null)
+                    {
+                        Reference._mError = Result;
+                    }
 
-                Reference._mIsModelReady = true;
+                    Reference._notifyErrorListeners(Result);
+                }
 
-                Reference._notifyReadyListeners();
-            }
-            else
-            {
-                Reference._notifyErrorListeners(Result);
+                return;
             }
+
+            Reference._install(_mModel);
+            Reference._notifyReadyListeners();
         }
     }
 
-    private ArrayList<String> _mClassLabels;
+    private final int TOP_K = 5;
+
+    private final int CACHE_SIZE = 4;
+    private final int CACHE_TOLERANCE = 6;
+    private final long CACHE_MAX_AGE_MS = 2000;
+
+    /**
+     * Recent camera frames for a zero shutter lag capture. Older frames don't show what the user has tapped.
+     */
+    private final int RING_SIZE = 3;
+    private final long RING_MAX_AGE_MS = 250;
+
+    /**
+     * Slots of the continuous classification: one frame is preprocessed, one is classified and one is published.
+     */
+    private final int PIPELINE_DEPTH = 3;
+
+    /**
+     * Channel means of the training data. app.py writes the file to the output directory of the dataset,
+     * it has to be copied next to the model. The bundled file contains the means of the Kaggle training set.
+     */
+    private final String MEAN_FILE = "CatsVsDogs_mean.json";
+
+    private final float SYNTHETIC_PEAK = 0.9f;
 
     private List<IObjectDetection> _mObjectDetectionListener;
 
-    private Interpreter _mTfLite;
+    private volatile Model _mModel;
 
-    private AssetManager _mAssetManager;
+    private boolean _mUseCache;
+
+    private int _mPoolSize;
 
-    private ByteBuffer _mInput;
+    private ExecutorService _mParallelExecutor;
+
+    private AssetManager _mAssetManager;
 
     private Interpreter.Options _mTfliteOptions;
 
-    private float[][] _mOutput;
+    private SharedPreferences _mTuningPreferences;
+
+    private boolean _mUseSyntheticEngine;
+
+    private long _mSyntheticLatency;
+
+    private volatile boolean _mIsClosed;
+
+    private volatile Long _mError = IObjectDetection.NO_ERROR;
+
+    private HandlerThread _mInferenceThread;
+
+    private Handler _mInferenceHandler;
+    private Handler _mMainHandler;
+
+    private final AtomicBoolean _mIsBusy = new AtomicBoolean(false);
+
+    private volatile Model _mAsyncModel;
+
+    private volatile PooledInterpreter _mAsyncInterpreter;
+
+    private volatile IClassification _mCallback;
+
+    /**
+     * The asynchronous classification uses a camera frame, so its result is stored in the cache.
+     */
+    private volatile boolean _mAsyncUseCache;
+
+    private volatile int _mTraceCookie;
 
-    private int _mChannels;
+    private volatile FrameRing _mRing;
 
-    private boolean _mIsModelReady;
+    private volatile PipelineStages _mPipeline;
 
     private String _getSettingsString(@NonNull Bundle Data, String Key)
     {
@@ -154,6 +324,7 @@ public class ObjectDetection
 
     /**
      * This function loads the TensorFlow Lite model and return a mapped byte buffer with the model data.
+     * Absolute paths are loaded from the file system, e.g. for an updated model, all other paths from the assets.
      * @param Manager: Asset manager
      * @param Path: Path to model file
      * @return Mapped byte buffer with model data
@@ -161,6 +332,16 @@ public class ObjectDetection
      */
     private MappedByteBuffer _loadModelFile(@NonNull AssetManager Manager, @NonNull String Path) throws IOException
     {
+        if(new File(Path).isAbsolute())
+        {
+            try(FileInputStream inputStream = new FileInputStream(Path))
+            {
+                FileChannel fileChannel = inputStream.getChannel();
+
+                return fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, fileChannel.size());
+            }
+        }
+
         AssetFileDescriptor FileDescriptor = Manager.openFd(Path);
         FileInputStream inputStream = new FileInputStream(FileDescriptor.getFileDescriptor());
         FileChannel fileChannel = inputStream.getChannel();
@@ -169,48 +350,111 @@ public class ObjectDetection
     }
 
     /**
-     * This function loads the TensorFlow model from the device.
+     * This function loads the TensorFlow model from the device, creates the interpreter pool and runs the warm up.
+     * The synthetic engine replaces the model if it is enabled in the settings.
      * @param Path: Path to TensorFlow Lite model
-     * @return Error code
+     * @param Labels: Class labels of the model
+     * @return Loaded model or null if the model couldn't be loaded or its class count doesn't match the labels
      */
-    private Long _loadModel(@NonNull String Path)
+    private Model _loadModel(@NonNull String Path, @NonNull ArrayList<String> Labels)
     {
         try
         {
-            // Load the model
-            _mTfLite = new Interpreter(_loadModelFile(_mAssetManager, Path), _mTfliteOptions);
+            IInferenceEngine.IFactory Factory;
+            AutoTuner.Configuration Tuning = null;
+
+            // Load the model. All interpreters share the mapped model data
+            MappedByteBuffer Data = _loadModelFile(_mAssetManager, Path);
+
+            Normalization Normalization = _loadNormalization(Path);
+            Log.i("ObjectDetection", "Input normalization " + Normalization);
+
+            if(_mUseSyntheticEngine)
+            {
+                // The synthetic engine replaces the model, but uses the geometry and the input format of its tensors
+                TfLiteEngine Probe = new TfLiteEngine(Data, new Interpreter.Options(), Normalization);
+                try
+                {
+                    Factory = SyntheticEngine.Factory(ModelDescriptor.fromEngine(Probe), _mSyntheticLatency, SYNTHETIC_PEAK);
+                }
+                finally
+                {
+                    Probe.close();
+                }
+            }
+            else
+            {
+                Interpreter.Options Options = _mTfliteOptions;
+
+                // Replace the options from the settings with the fastest configuration for this device
+                if(_mTuningPreferences != null)
+                {
+                    Tuning = AutoTuner.getConfiguration(_mTuningPreferences, Data, _mPoolSize);
+                    Options = Tuning.createOptions();
+
+                    Log.i("ObjectDetection", "Using " + Tuning);
+                }
+
+                Factory = TfLiteEngine.Factory(Data, Options, Normalization);
+            }
+
+            // The buffers are created from the tensors of the model
+            InterpreterPool Pool = new InterpreterPool(Factory, _mPoolSize, TOP_K);
+            ModelDescriptor Descriptor = Pool.getDescriptor();
+
+            Log.i("ObjectDetection", "Model " + Descriptor);
+
+            // The results are looked up in the labels by the class index
+            if(Labels.size() != Descriptor.getClassCount())
+            {
+                Pool.close();
+
+                throw new IllegalArgumentException("Label count (" + Labels.size() + ") doesn't match the model (" + Descriptor.getClassCount() + ")");
+            }
+
+            ResultCache Cache = null;
+            if(_mUseCache)
+            {
+                Cache = new ResultCache(CACHE_SIZE, Pool.getClassCount(), CACHE_TOLERANCE, CACHE_MAX_AGE_MS);
+            }
 
-            return IObjectDetection.NO_ERROR;
+            return new Model(Pool, Cache, Labels, Tuning);
         }
         catch(IOException e)
         {
             Log.e("ObjectDetection", "Load model IO exception: " + e.toString());
 
-            return IObjectDetection.MODEL_ERROR;
+            return null;
+        }
+        catch(IllegalArgumentException e)
+        {
+            Log.e("ObjectDetection", "Unsupported model: " + e.getMessage());
+
+            return null;
         }
     }
 
     /**
-     * This function loads the label file from the device
+     * This function loads the label file from the device.
+     * Absolute paths are loaded from the file system, all other paths from the assets.
      * @param Path: Path to label file
+     * @param Labels: List for the labels
      * @return Error code
      */
-    private Long _loadLabel(@NonNull String Path)
+    private Long _loadLabel(@NonNull String Path, @NonNull ArrayList<String> Labels)
     {
         Long ErrorCode = IObjectDetection.NO_ERROR;
 
-        // Remove all old labels
-        _mClassLabels.clear();
-
         BufferedReader FileReader = null;
         try
         {
-            FileReader = new BufferedReader(new InputStreamReader(_mAssetManager.open(Path)));
+            InputStream Stream = new File(Path).isAbsolute() ? new FileInputStream(Path) : _mAssetManager.open(Path);
+            FileReader = new BufferedReader(new InputStreamReader(Stream));
 
             String mLine;
             while((mLine = FileReader.readLine()) != null)
             {
-                _mClassLabels.add(mLine);
+                Labels.add(mLine);
             }
         }
         catch(IOException e)
@@ -226,9 +470,6 @@ public class ObjectDetection
                 try
                 {
                     FileReader.close();
-
-                    ErrorCode = IObjectDetection.NO_ERROR;
-
                 }
                 catch (IOException e)
                 {
@@ -242,30 +483,183 @@ public class ObjectDetection
         return ErrorCode;
     }
 
+    /**
+     * Load the normalization of the model input from the mean file in the directory of the model.
+     * The file contains the channel means "R", "G" and "B" and optionally a common "Scale" and the channel "Order".
+     * The model is trained with OpenCV images, so the channels are in BGR order by default.
+     * A model without a mean file gets the raw color values, which usually don't match the training data.
+     * @param ModelPath: Path to the model in the assets or absolute path in the file system
+     * @return Normalization or the raw color values if the model has no mean file
+     * @throws IOException: The mean file can't be read
+     * @throws IllegalArgumentException: The mean file is invalid
+     */
+    private Normalization _loadNormalization(@NonNull String ModelPath) throws IOException
+    {
+        File Model = new File(ModelPath);
+        String Path = (Model.getParent() != null) ? new File(Model.getParent(), MEAN_FILE).getPath() : MEAN_FILE;
+
+        StringBuilder Text = new StringBuilder();
+        try(BufferedReader FileReader = new BufferedReader(new InputStreamReader(Model.isAbsolute() ? new FileInputStream(Path) : _mAssetManager.open(Path))))
+        {
+            String mLine;
+            while((mLine = FileReader.readLine()) != null)
+            {
+                Text.append(mLine);
+            }
+        }
+        catch(FileNotFoundException e)
+        {
+            Log.w("ObjectDetection", "No mean file " + Path + " for the model. Using the raw color values!");
+
+            return Normalization.IDENTITY;
+        }
+
+        try
+        {
+            JSONObject Means = new JSONObject(Text.toString());
+            float Scale = (float)Means.optDouble("Scale", 1.0);
+            String Order = Means.optString("Order", "BGR");
+
+            if(!Order.equals("BGR") && !Order.equals("RGB"))
+            {
+                throw new IllegalArgumentException("Unsupported channel order: " + Order);
+            }
+
+            return new Normalization(new float[] {(float)Means.getDouble("R"), (float)Means.getDouble("G"), (float)Means.getDouble("B")},
+                                     new float[] {Scale, Scale, Scale}, Order.equals("BGR"));
+        }
+        catch(JSONException e)
+        {
+            throw new IllegalArgumentException("Invalid mean file: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Replace the current model with a loaded model. Running classifications finish with the old model,
+     * which is released after the last of them has returned its interpreter.
+     * @param New: Loaded and warmed up model
+     */
+    private void _install(@NonNull Model New)
+    {
+        Model Old = _mModel;
+        _mModel = New;
+
+        if(Old != null)
+        {
+            Old.retire();
+        }
+
+        _mError = IObjectDetection.NO_ERROR;
+    }
+
+    /**
+     * Register as user of the current model.
+     * @return Current model or null if no model is loaded
+     */
+    private Model _enter()
+    {
+        Model Current;
+        do
+        {
+            Current = _mModel;
+            if(Current == null)
+            {
+                return null;
+            }
+        }
+        while(!Current.enter());
+
+        return Current;
+    }
+
     /**
      * Constructor.
-     * @param Manager: Asset manager
+     * @param context: Current context
      * @param ModelPath: Path to TensorFlow Lite model
      * @param LabelPath: Path to labels as text file
      * @param Settings: Bundle with settings
      */
-    public ObjectDetection(@NonNull AssetManager Manager, @NonNull String ModelPath, @NonNull String LabelPath, @NonNull Bundle Settings)
+    public ObjectDetection(@NonNull Context context, @NonNull String ModelPath, @NonNull String LabelPath, @NonNull Bundle Settings)
     {
         _mObjectDetectionListener = new ArrayList<>();
 
-        _mIsModelReady = false;
-        _mAssetManager = Manager;
-        _mClassLabels = new ArrayList<>();
+        _mAssetManager = context.getAssets();
 
-        // Configure TensorFlow Lite
+        // Configure TensorFlow Lite. Each interpreter of the pool uses the configured number of threads
         _mTfliteOptions = new Interpreter.Options();
         _mTfliteOptions.setNumThreads(Integer.parseInt(_getSettingsString(Settings, "Threads")));
         _mTfliteOptions.setUseNNAPI(Settings.getBoolean("UseNNAPI"));
 
-        // Create the input and output buffer
-        _mChannels = Integer.parseInt(_getSettingsString(Settings, "ModelInputChannel"));
-        _mInput = ByteBuffer.allocateDirect(4 * Integer.parseInt(_getSettingsString(Settings, "ModelInputWidth")) * Integer.parseInt(_getSettingsString(Settings, "ModelInputHeight"))* _mChannels);
-        _mInput.order(ByteOrder.nativeOrder());
+        // The synthetic engine replaces the model with a deterministic stand-in for load tests
+        _mUseSyntheticEngine = Settings.getBoolean("SyntheticEngine");
+        _mSyntheticLatency = Long.parseLong(_getSettingsString(Settings, "SyntheticLatency")) * 1000L;
+
+        // The auto tuning measures the delegates and thread counts at the first start and stores the fastest configuration
+        if(Settings.getBoolean("AutoTune") && !_mUseSyntheticEngine)
+        {
+            _mTuningPreferences = context.getSharedPreferences(AutoTuner.PREFERENCES, Context.MODE_PRIVATE);
+        }
+
+        _mPoolSize = Integer.parseInt(_getSettingsString(Settings, "Interpreters"));
+
+        // Frames with a similar signature reuse the previous result instead of running the model
+        _mUseCache = Settings.getBoolean("FrameCache");
+
+        // Start the inference thread and the workers for the parallel classification
+        _mInferenceThread = new HandlerThread("Inference");
+        _mInferenceThread.start();
+        _mInferenceHandler = new Handler(_mInferenceThread.getLooper());
+        _mMainHandler = new Handler(Looper.getMainLooper());
+        _mParallelExecutor = Executors.newFixedThreadPool(_mPoolSize);
+
+        new Loader(this).execute(ModelPath, LabelPath);
+    }
+
+    /**
+     * Stop the inference threads and release the interpreters.
+     * Shared instances from the ModelRegistry are closed by the registry.
+     */
+    public void close()
+    {
+        _mIsClosed = true;
+
+        _mInferenceThread.quitSafely();
+        _mParallelExecutor.shutdown();
+        try
+        {
+            _mInferenceThread.join();
+            _mParallelExecutor.awaitTermination(1, TimeUnit.SECONDS);
+        }
+        catch(InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+
+        // A classification which is still published on the main thread releases the interpreters when it has finished
+        Model Current = _mModel;
+        _mModel = null;
+        if(Current != null)
+        {
+            Current.retire();
+        }
+    }
+
+    /**
+     * Load a new version of the model in the background while the current model keeps classifying.
+     * The new model replaces the current model atomically after the warm up and onModelReady is called again.
+     * The current model is kept and onDetectionError is called if the new model can't be loaded.
+     * The new model can use another input geometry, so the listeners should read the descriptor again in onModelReady.
+     * @param ModelPath: Path to TensorFlow Lite model. Absolute paths are loaded from the file system, all other paths from the assets
+     * @param LabelPath: Path to labels as text file
+     */
+    public void swapModel(@NonNull String ModelPath, @NonNull String LabelPath)
+    {
+        if(_mIsClosed)
+        {
+            return;
+        }
+
+        Log.i("ObjectDetection", "Loading " + ModelPath);
 
         new Loader(this).execute(ModelPath, LabelPath);
     }
@@ -294,7 +688,16 @@ public class ObjectDetection
      */
     public boolean getIsModelReady()
     {
-        return _mIsModelReady;
+        return _mModel != null;
+    }
+
+    /**
+     * Get the result of the model loading.
+     * @return Error code or NO_ERROR if the model is loaded or still loading
+     */
+    public Long getError()
+    {
+        return _mError;
     }
 
     /**
@@ -303,32 +706,680 @@ public class ObjectDetection
      */
     public ArrayList<String> getLabel()
     {
-        return _mClassLabels;
+        Model Current = _mModel;
+
+        return (Current != null) ? Current.Labels : new ArrayList<>();
+    }
+
+    /**
+     * Get the configuration which was selected by the auto tuning.
+     * @return Configuration or null if the auto tuning is disabled
+     */
+    public AutoTuner.Configuration getTuning()
+    {
+        Model Current = _mModel;
+
+        return (Current != null) ? Current.Tuning : null;
+    }
+
+    /**
+     * Get the number of interpreters.
+     * @return Pool size
+     */
+    public int getPoolSize()
+    {
+        return _mPoolSize;
+    }
+
+    /**
+     * Get the input and output geometry of the current model.
+     * @return Model descriptor or null if no model is loaded
+     */
+    public ModelDescriptor getDescriptor()
+    {
+        Model Current = _mModel;
+
+        return (Current != null) ? Current.Descriptor : null;
+    }
+
+    /**
+     * Get the number of classes of the model. The model must be ready.
+     * @return Class count
+     */
+    public int getClassCount()
+    {
+        return _mModel.Descriptor.getClassCount();
+    }
+
+    /**
+     * Get the number of frames of the current model which used a cached result.
+     * @return Hit count or 0 if the cache is disabled
+     */
+    public long getCacheHits()
+    {
+        Model Current = _mModel;
+
+        return ((Current != null) && (Current.Cache != null)) ? Current.Cache.getHits() : 0;
+    }
+
+    /**
+     * Get the number of frames which were classified by the model, because no cached result was found.
+     * @return Miss count or 0 if the cache is disabled
+     */
+    public long getCacheMisses()
+    {
+        Model Current = _mModel;
+
+        return ((Current != null) && (Current.Cache != null)) ? Current.Cache.getMisses() : 0;
+    }
+
+    /**
+     * Store the result of the interpreter in the cache.
+     * @param Current: Model of the interpreter
+     * @param Interpreter: Interpreter after a run
+     */
+    private void _store(@NonNull Model Current, @NonNull PooledInterpreter Interpreter)
+    {
+        if(Current.Cache != null)
+        {
+            InterpreterAdapter.store(Interpreter, Current.Cache);
+        }
     }
 
     /**
-     * Classify the given image.
+     * Classify the given image. The method is thread safe and blocks until an interpreter of the pool is available.
      * @param InputImage: Input image
-     * @return List with floating point predictions for each class
+     * @param Result: Array for the floating point predictions for each class
+     * @return true if the image was classified
      */
-    public List<Float> Classify(@NonNull Bitmap InputImage)
+    public boolean Classify(@NonNull Bitmap InputImage, @NonNull float[] Result)
     {
-        if(_mIsModelReady)
+        Model Current = _enter();
+        if(Current == null)
+        {
+            return false;
+        }
+
+        PooledInterpreter Interpreter;
+        try
+        {
+            Interpreter = Current.Pool.acquire();
+        }
+        catch(InterruptedException e)
         {
-            _mInput = ImagePreprocessing.Bitmap2ByteBuffer(InputImage, _mChannels);
+            Current.leave();
+            Thread.currentThread().interrupt();
 
-            // Run the prediction
-            _mTfLite.run(_mInput, _mOutput);
+            return false;
+        }
 
-            List<Float> Result = new ArrayList<>(_mOutput[0].length);
-            for(float f : _mOutput[0])
-            {
-                Result.add(f);
-            }
+        try
+        {
+            InterpreterAdapter.preprocess(Interpreter, InputImage);
+            InterpreterAdapter.run(Interpreter);
 
-            return Result;
+            float[] Output = Interpreter.getResult().getProbabilities();
+            System.arraycopy(Output, 0, Result, 0, Math.min(Result.length, Output.length));
         }
+        finally
+        {
+            Current.Pool.release(Interpreter);
+            Current.leave();
+        }
+
+        return true;
+    }
+
+    /**
+     * Classify the region of interest of a YUV_420_888 camera image.
+     * The region is converted, cropped and scaled straight into the model input.
+     * The method is thread safe and blocks until an interpreter of the pool is available.
+     * @param Frame: Camera image in YUV_420_888 format
+     * @param ROI: Region of interest in image coordinates
+     * @param Result: Array for the floating point predictions for each class
+     * @return true if the image was classified
+     */
+    public boolean Classify(@NonNull Image Frame, @NonNull Rect ROI, @NonNull float[] Result)
+    {
+        Model Current = _enter();
+        if(Current == null)
+        {
+            return false;
+        }
+
+        PooledInterpreter Interpreter;
+        try
+        {
+            Interpreter = Current.Pool.acquire();
+        }
+        catch(InterruptedException e)
+        {
+            Current.leave();
+            Thread.currentThread().interrupt();
+
+            return false;
+        }
+
+        try
+        {
+            InterpreterAdapter.preprocess(Interpreter, Frame, ROI);
+            InterpreterAdapter.run(Interpreter);
+
+            float[] Output = Interpreter.getResult().getProbabilities();
+            System.arraycopy(Output, 0, Result, 0, Math.min(Result.length, Output.length));
+        }
+        finally
+        {
+            Current.Pool.release(Interpreter);
+            Current.leave();
+        }
+
+        return true;
+    }
+
+    /**
+     * Classify several images with a single interpreter invocation.
+     * The images are packed into one contiguous input buffer and the batch dimension of the interpreter is resized.
+     * The method is thread safe and blocks until an interpreter of the pool is available.
+     * @param Images: Input images
+     * @param Results: Array for the floating point predictions. One row with the predictions for each class per image
+     * @return true if the images were classified
+     */
+    public boolean classifyBatch(@NonNull List<Bitmap> Images, @NonNull float[][] Results)
+    {
+        if(Results.length != Images.size())
+        {
+            throw new IllegalArgumentException("Result rows (" + Results.length + ") don't match the image count (" + Images.size() + ")");
+        }
+
+        if(Images.isEmpty())
+        {
+            return getIsModelReady();
+        }
+
+        Model Current = _enter();
+        if(Current == null)
+        {
+            return false;
+        }
+
+        PooledInterpreter Interpreter;
+        try
+        {
+            Interpreter = Current.Pool.acquire();
+        }
+        catch(InterruptedException e)
+        {
+            Current.leave();
+            Thread.currentThread().interrupt();
+
+            return false;
+        }
+
+        try
+        {
+            InterpreterAdapter.runBatch(Interpreter, Images, Results);
+        }
+        finally
+        {
+            Current.Pool.release(Interpreter);
+            Current.leave();
+        }
+
+        return true;
+    }
+
+    /**
+     * Classify independent images in parallel with all interpreters of the pool.
+     * The calling thread is blocked until all images are classified.
+     * @param Images: Input images
+     * @param Results: Array for the floating point predictions. One row with the predictions for each class per image
+     * @return true if all images were classified
+     */
+    public boolean classifyParallel(@NonNull final List<Bitmap> Images, @NonNull final float[][] Results)
+    {
+        if(Results.length != Images.size())
+        {
+            throw new IllegalArgumentException("Result rows (" + Results.length + ") don't match the image count (" + Images.size() + ")");
+        }
+
+        if(!getIsModelReady())
+        {
+            return false;
+        }
+
+        final CountDownLatch Done = new CountDownLatch(Images.size());
+        final AtomicBoolean Success = new AtomicBoolean(true);
+
+        for(int i = 0; i < Images.size(); i++)
+        {
+            final int Index = i;
+
+            _mParallelExecutor.execute(() ->
+            {
+                try
+                {
+                    if(!Classify(Images.get(Index), Results[Index]))
+                    {
+                        Success.set(false);
+                    }
+                }
+                finally
+                {
+                    Done.countDown();
+                }
+            });
+        }
+
+        try
+        {
+            Done.await();
+        }
+        catch(InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+
+            return false;
+        }
+
+        return Success.get();
+    }
+
+    /**
+     * Classify the given image on the inference thread.
+     * The image is converted on the calling thread, so the caller can reuse the bitmap after the method returns.
+     * The image is rejected if the model isn't ready, if the previous classification is still running
+     * or if all interpreters of the pool are in use.
+     * @param InputImage: Input image
+     * @param Callback: Result callback, called on the main thread
+     * @return true if the image was accepted
+     */
+    public boolean classifyAsync(@NonNull Bitmap InputImage, @NonNull IClassification Callback)
+    {
+        if(!_acquireAsync())
+        {
+            return false;
+        }
+
+        _mCallback = Callback;
+        _mAsyncUseCache = false;
+
+        InterpreterAdapter.preprocess(_mAsyncInterpreter, InputImage);
+        _mInferenceHandler.post(_mPredictionTask);
+
+        return true;
+    }
+
+    /**
+     * Classify the region of interest of a YUV_420_888 camera image in a pipeline. The region is converted
+     * into a free slot on the calling thread, because the image is only valid until the caller closes it. The slot
+     * is classified on the inference thread and published on the main thread, so the next image is already converted
+     * while the model runs. The results are published in the order of the images.
+     * The image is rejected if the model isn't ready or if all slots of the pipeline are in use. An accepted image
+     * which can't be classified later is reported with onClassificationDropped.
+     * Must always be called on the same thread.
+     * @param Frame: Camera image in YUV_420_888 format
+     * @param ROI: Region of interest in image coordinates
+     * @param Callback: Result callback, called on the main thread
+     * @return true if the image was accepted
+     */
+    public boolean classifyAsync(@NonNull Image Frame, @NonNull Rect ROI, @NonNull IClassification Callback)
+    {
+        Model Current = _mModel;
+        if(Current == null)
+        {
+            return false;
+        }
+
+        // The slots are sized for the model. The queued slots of a previous model are finished
+        // by the stages of their own pipeline and reported as dropped
+        PipelineStages Stages = _mPipeline;
+        if((Stages == null) || (Stages.Pipeline.getDescriptor() != Current.Descriptor))
+        {
+            Stages = new PipelineStages(new FramePipeline(Current.Descriptor, PIPELINE_DEPTH, TOP_K));
+            _mPipeline = Stages;
+        }
+
+        FramePipeline Pipeline = Stages.Pipeline;
+
+        int Index = Pipeline.claim();
+        if(Index == -1)
+        {
+            return false;
+        }
+
+        FramePipeline.Slot Slot = Pipeline.getSlot(Index);
+        Slot.Callback = Callback;
+        Slot.IsCached = false;
+
+        // A cached result is passed through the inference stage without a run of the model
+        if(Current.Cache != null)
+        {
+            Image.Plane Luma = Frame.getPlanes()[0];
+            FrameSignature.fromLuma(Luma.getBuffer(), Luma.getRowStride(), ROI.left, ROI.top, ROI.width(), ROI.height(), Slot.Signature);
+            Slot.IsCached = Current.Cache.lookup(Slot.Signature, Slot.Scores);
+        }
+
+        if(!Slot.IsCached)
+        {
+            ModelDescriptor Descriptor = Pipeline.getDescriptor();
+
+            long Start = Profiler.begin(Profiler.Stage.PREPROCESS);
+            ImagePreprocessing.YUV2ByteBuffer(Frame, ROI, Descriptor.getInputWidth(), Descriptor.getInputHeight(),
+                    Descriptor.getInputChannels(), Slot.Input, Slot.Floats, Descriptor.getInputFormat());
+            Profiler.end(Profiler.Stage.PREPROCESS, Start);
+        }
+
+        Pipeline.submit(Index);
+        _mInferenceHandler.post(Stages.Inference);
+
+        return true;
+    }
+
+    /**
+     * Inference and publishing stage of a pipeline. Each pipeline has its own stages, so the slots of a pipeline
+     * which was replaced for a new model are still classified or dropped and published.
+     */
+    private final class PipelineStages
+    {
+        final FramePipeline Pipeline;
+
+        /**
+         * Inference stage of the pipeline. Classifies all waiting slots on the inference thread.
+         */
+        final Runnable Inference = new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                int Index;
+                while((Index = Pipeline.take()) != -1)
+                {
+                    FramePipeline.Slot Slot = Pipeline.getSlot(Index);
+                    Slot.IsValid = Slot.IsCached || _runSlot(Pipeline, Slot);
+
+                    if(Slot.IsValid)
+                    {
+                        Slot.Result.update();
+                    }
+
+                    Pipeline.complete(Index);
+                    _mMainHandler.post(Publish);
+                }
+            }
+        };
+
+        /**
+         * Publishing stage of the pipeline. Publishes all classified slots on the main thread and recycles them.
+         */
+        final Runnable Publish = new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                int Index;
+                while((Index = Pipeline.collect()) != -1)
+                {
+                    FramePipeline.Slot Slot = Pipeline.getSlot(Index);
+                    if(Slot.IsValid)
+                    {
+                        Slot.Callback.onClassificationResult(Slot.Result);
+                    }
+                    else
+                    {
+                        Slot.Callback.onClassificationDropped();
+                    }
+
+                    Pipeline.recycle(Index);
+                }
+            }
+        };
+
+        /**
+         * Constructor.
+         * @param Pipeline: Pipeline of the stages
+         */
+        PipelineStages(@NonNull FramePipeline Pipeline)
+        {
+            this.Pipeline = Pipeline;
+        }
+    }
+
+    /**
+     * Run the model for a slot of the pipeline. Must be called on the inference thread.
+     * @param Pipeline: Pipeline of the slot
+     * @param Slot: Preprocessed slot
+     * @return true if the slot was classified, false if the model was swapped or no interpreter is available
+     */
+    private boolean _runSlot(@NonNull FramePipeline Pipeline, @NonNull FramePipeline.Slot Slot)
+    {
+        Model Current = _enter();
+        if(Current == null)
+        {
+            return false;
+        }
+
+        try
+        {
+            // The input was converted for the geometry of another model
+            if(Current.Descriptor != Pipeline.getDescriptor())
+            {
+                return false;
+            }
+
+            // Don't block the inference thread, an asynchronous classification waits on it for its interpreter
+            PooledInterpreter Interpreter = Current.Pool.tryAcquire();
+            if(Interpreter == null)
+            {
+                return false;
+            }
+
+            try
+            {
+                InterpreterAdapter.run(Interpreter, Slot.Input, Slot.Scores);
+            }
+            finally
+            {
+                Current.Pool.release(Interpreter);
+            }
+
+            if(Current.Cache != null)
+            {
+                Current.Cache.put(Slot.Signature, Slot.Scores);
+            }
+
+            return true;
+        }
+        finally
+        {
+            Current.leave();
+        }
+    }
+
+    /**
+     * Preprocess the region of interest of a camera image into the ring of recent frames, so that a later
+     * call of classifyLatest only has to run the model. The ring is created for the geometry of the current model.
+     * Must always be called on the same thread.
+     * @param Frame: Camera image in YUV_420_888 format
+     * @param ROI: Region of interest in image coordinates
+     * @return true if the frame was buffered, false if the model isn't ready
+     */
+    public boolean bufferFrame(@NonNull Image Frame, @NonNull Rect ROI)
+    {
+        Model Current = _mModel;
+        if(Current == null)
+        {
+            return false;
+        }
+
+        FrameRing Ring = _mRing;
+        if((Ring == null) || (Ring.getDescriptor() != Current.Descriptor))
+        {
+            Ring = new FrameRing(Current.Descriptor, RING_SIZE);
+            _mRing = Ring;
+        }
+
+        int Slot = Ring.claim();
+        ModelDescriptor Descriptor = Ring.getDescriptor();
+
+        long Start = Profiler.begin(Profiler.Stage.PREPROCESS);
+        ImagePreprocessing.YUV2ByteBuffer(Frame, ROI, Descriptor.getInputWidth(), Descriptor.getInputHeight(),
+                Descriptor.getInputChannels(), Ring.getInput(Slot), Ring.getFloats(Slot), Descriptor.getInputFormat());
+        Profiler.end(Profiler.Stage.PREPROCESS, Start);
+
+        if(Current.Cache != null)
+        {
+            Image.Plane Luma = Frame.getPlanes()[0];
+            FrameSignature.fromLuma(Luma.getBuffer(), Luma.getRowStride(), ROI.left, ROI.top, ROI.width(), ROI.height(), Ring.getSignature(Slot));
+        }
+
+        Ring.publish(Slot);
+
+        return true;
+    }
+
+    /**
+     * Classify the newest frame of the ring on the inference thread. A cached result of the frame is published
+     * without a run of the model. The call is rejected if no recent frame is buffered, if the model isn't ready,
+     * if the previous classification is still running or if all interpreters of the pool are in use.
+     * @param Callback: Result callback, called on the main thread
+     * @return true if a buffered frame was accepted
+     */
+    public boolean classifyLatest(@NonNull IClassification Callback)
+    {
+        FrameRing Ring = _mRing;
+        if(Ring == null)
+        {
+            return false;
+        }
+
+        int Slot = Ring.acquireNewest(RING_MAX_AGE_MS);
+        if(Slot == -1)
+        {
+            return false;
+        }
+
+        try
+        {
+            if(!_acquireAsync())
+            {
+                return false;
+            }
+
+            // The ring can still hold frames of the previous model after a swap
+            if(!_mAsyncInterpreter.load(Ring.getInput(Slot), Ring.getSignature(Slot)))
+            {
+                _releaseAsync();
+
+                return false;
+            }
+        }
+        finally
+        {
+            Ring.release();
+        }
+
+        _mCallback = Callback;
+        _mAsyncUseCache = true;
+
+        if((_mAsyncModel.Cache != null) && InterpreterAdapter.lookup(_mAsyncInterpreter, _mAsyncModel.Cache))
+        {
+            _mMainHandler.post(_mPublishTask);
+
+            return true;
+        }
+
+        _mInferenceHandler.post(_mPredictionTask);
+
+        return true;
+    }
+
+    /**
+     * Check out an interpreter for an asynchronous classification.
+     * @return true if an interpreter is available and no other asynchronous classification is running
+     */
+    private boolean _acquireAsync()
+    {
+        if(!_mIsBusy.compareAndSet(false, true))
+        {
+            return false;
+        }
+
+        Model Current = _enter();
+        if(Current == null)
+        {
+            _mIsBusy.set(false);
+
+            return false;
+        }
+
+        _mAsyncInterpreter = Current.Pool.tryAcquire();
+        if(_mAsyncInterpreter == null)
+        {
+            Current.leave();
+            _mIsBusy.set(false);
+
+            return false;
+        }
+
+        // A swap of the model during the classification doesn't affect the checked out interpreter
+        _mAsyncModel = Current;
+
+        // The event spans the camera thread, the inference thread and the main thread
+        Tracer.beginAsyncSection("Classification", ++_mTraceCookie);
+
+        return true;
+    }
+
+    /**
+     * Run the model on the inference thread and publish the result on the main thread.
+     */
+    private final Runnable _mPredictionTask = new Runnable()
+    {
+        @Override
+        public void run()
+        {
+            InterpreterAdapter.run(_mAsyncInterpreter);
+            if(_mAsyncUseCache)
+            {
+                _store(_mAsyncModel, _mAsyncInterpreter);
+            }
+
+            _mMainHandler.post(_mPublishTask);
+        }
+    };
+
+    /**
+     * Publish the result on the main thread.
+     * The interpreter is returned after the callback has returned, because the result is reused.
+     */
+    private final Runnable _mPublishTask = new Runnable()
+    {
+        @Override
+        public void run()
+        {
+            IClassification Callback = _mCallback;
+            _mCallback = null;
+
+            Callback.onClassificationResult(_mAsyncInterpreter.getResult());
+
+            _releaseAsync();
+        }
+    };
+
+    /**
+     * Return the interpreter of an asynchronous classification and accept the next classification.
+     */
+    private void _releaseAsync()
+    {
+        PooledInterpreter Interpreter = _mAsyncInterpreter;
+        Model Current = _mAsyncModel;
+        _mAsyncInterpreter = null;
+        _mAsyncModel = null;
 
-        return new ArrayList<>(0);
+        Current.Pool.release(Interpreter);
+        Current.leave();
+        Tracer.endAsyncSection("Classification", _mTraceCookie);
+        _mIsBusy.set(false);
     }
 }
\ No newline at end of file
@@ -0,0 +1,171 @@
+package com.kampis_elektroecke.dogsvscats.ObjectDetection;
+
+import androidx.annotation.NonNull;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+
+/**
+ * Preprocessing kernels without dependencies to the Android runtime.
+ * They work on plain pixel arrays and buffers, so they can be benchmarked on a desktop JVM.
+ */
+public class PixelKernels
+{
+    /**
+     * Converted pixels of an output row of the YUV conversion. Each thread uses its own row.
+     */
+    private static final ThreadLocal<int[]> _ROW = ThreadLocal.withInitial(() -> new int[0]);
+
+    /***
+     * Convert ARGB pixels into a caller owned byte buffer.
+     * A floating point input gets a new float view of the buffer, hot paths pass the cached view of the buffer owner.
+     * @param Pixel: ARGB pixels
+     * @param Count: Number of pixels
+     * @param Channels: Color channel count
+     * @param Output: Byte buffer for the image data
+     * @param Format: Input format of the model
+     */
+    public static void Pixels2ByteBuffer(@NonNull int[] Pixel, int Count, int Channels, @NonNull ByteBuffer Output, @NonNull InputFormat Format)
+    {
+        Pixels2ByteBuffer(Pixel, Count, Channels, Output, Format.createFloatView(Output), Format);
+    }
+
+    /***
+     * Convert ARGB pixels into a caller owned byte buffer without allocating memory.
+     * @param Pixel: ARGB pixels
+     * @param Count: Number of pixels
+     * @param Channels: Color channel count
+     * @param Output: Byte buffer for the image data
+     * @param Floats: Float view of the byte buffer from InputFormat.createFloatView or null for a quantized input
+     * @param Format: Input format of the model
+     */
+    public static void Pixels2ByteBuffer(@NonNull int[] Pixel, int Count, int Channels, @NonNull ByteBuffer Output, FloatBuffer Floats, @NonNull InputFormat Format)
+    {
+        _rewind(Output, Floats);
+        Format.putPixels(Pixel, 0, Count, Channels, Output, Floats);
+        Output.rewind();
+    }
+
+    /***
+     * Convert a region of YUV_420 planes into a caller owned byte buffer.
+     * A floating point input gets a new float view of the buffer, hot paths pass the cached view of the buffer owner.
+     * @param Y: Luminance plane
+     * @param U: Cb plane
+     * @param V: Cr plane
+     * @param YRowStride: Row stride of the luminance plane
+     * @param UVRowStride: Row stride of the chroma planes
+     * @param UVPixelStride: Pixel stride of the chroma planes
+     * @param Left: Left edge of the region
+     * @param Top: Top edge of the region
+     * @param RegionWidth: Width of the region
+     * @param RegionHeight: Height of the region
+     * @param Width: Output width
+     * @param Height: Output height
+     * @param Channels: Color channel count
+     * @param Output: Byte buffer for the image data
+     * @param Format: Input format of the model
+     */
+    public static void YUV2ByteBuffer(@NonNull ByteBuffer Y, @NonNull ByteBuffer U, @NonNull ByteBuffer V,
+                                      int YRowStride, int UVRowStride, int UVPixelStride,
+                                      int Left, int Top, int RegionWidth, int RegionHeight,
+                                      int Width, int Height, int Channels, @NonNull ByteBuffer Output, @NonNull InputFormat Format)
+    {
+        YUV2ByteBuffer(Y, U, V, YRowStride, UVRowStride, UVPixelStride, Left, Top, RegionWidth, RegionHeight,
+                Width, Height, Channels, Output, Format.createFloatView(Output), Format);
+    }
+
+    /***
+     * Convert a region of YUV_420 planes into a caller owned byte buffer without allocating memory.
+     * The conversion uses the full range BT.601 coefficients of the camera HAL.
+     * @param Y: Luminance plane
+     * @param U: Cb plane
+     * @param V: Cr plane
+     * @param YRowStride: Row stride of the luminance plane
+     * @param UVRowStride: Row stride of the chroma planes
+     * @param UVPixelStride: Pixel stride of the chroma planes
+     * @param Left: Left edge of the region
+     * @param Top: Top edge of the region
+     * @param RegionWidth: Width of the region
+     * @param RegionHeight: Height of the region
+     * @param Width: Output width
+     * @param Height: Output height
+     * @param Channels: Color channel count
+     * @param Output: Byte buffer for the image data
+     * @param Floats: Float view of the byte buffer from InputFormat.createFloatView or null for a quantized input
+     * @param Format: Input format of the model
+     */
+    public static void YUV2ByteBuffer(@NonNull ByteBuffer Y, @NonNull ByteBuffer U, @NonNull ByteBuffer V,
+                                      int YRowStride, int UVRowStride, int UVPixelStride,
+                                      int Left, int Top, int RegionWidth, int RegionHeight,
+                                      int Width, int Height, int Channels, @NonNull ByteBuffer Output, FloatBuffer Floats, @NonNull InputFormat Format)
+    {
+        int[] Row = _getRow(Width);
+
+        _rewind(Output, Floats);
+        for(int y = 0; y < Height; y++)
+        {
+            int SourceY = Top + ((y * RegionHeight) / Height);
+            int YRow = SourceY * YRowStride;
+            int UVRow = (SourceY >> 1) * UVRowStride;
+
+            for(int x = 0; x < Width; x++)
+            {
+                int SourceX = Left + ((x * RegionWidth) / Width);
+                int UVIndex = UVRow + ((SourceX >> 1) * UVPixelStride);
+
+                int Luma = Y.get(YRow + SourceX) & 0xFF;
+                int Cb = (U.get(UVIndex) & 0xFF) - 128;
+                int Cr = (V.get(UVIndex) & 0xFF) - 128;
+
+                Row[x] = (_clamp(Luma + ((91881 * Cr) >> 16)) << 16) |
+                         (_clamp(Luma - ((22554 * Cb + 46802 * Cr) >> 16)) << 8) |
+                         _clamp(Luma + ((116130 * Cb) >> 16));
+            }
+
+            Format.putPixels(Row, 0, Width, Channels, Output, Floats);
+        }
+        Output.rewind();
+    }
+
+    /**
+     * Get the row buffer of the current thread.
+     * @param Width: Number of pixels in a row
+     * @return Row buffer with at least Width pixels
+     */
+    private static int[] _getRow(int Width)
+    {
+        int[] Row = _ROW.get();
+        if(Row.length < Width)
+        {
+            Row = new int[Width];
+            _ROW.set(Row);
+        }
+
+        return Row;
+    }
+
+    /**
+     * Move the input buffer and its float view to the beginning.
+     * @param Output: Input buffer
+     * @param Floats: Float view or null
+     */
+    private static void _rewind(@NonNull ByteBuffer Output, FloatBuffer Floats)
+    {
+        Output.rewind();
+
+        if(Floats != null)
+        {
+            Floats.rewind();
+        }
+    }
+
+    /***
+     * Clamp a color value to the range 0 - 255.
+     * @param Value: Color value
+     * @return Clamped value
+     */
+    private static int _clamp(int Value)
+    {
+        return (Value < 0) ? 0 : ((Value > 255) ? 255 : Value);
+    }
+}
@@ -0,0 +1,263 @@
+package com.kampis_elektroecke.dogsvscats.ObjectDetection;
+
+import androidx.annotation.NonNull;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+/**
+ * Engine of the pool with its input buffers and result. The class only depends on plain Java, so the pool can be
+ * benchmarked on a desktop JVM. The Android images are converted by the InterpreterAdapter.
+ */
+public class PooledInterpreter
+{
+    private IInferenceEngine _mEngine;
+
+    private ByteBuffer _mInput;
+    private FloatBuffer _mInputFloats;
+
+    private InputFormat _mInputFormat;
+
+    private ByteBuffer _mBatchInput;
+    private ByteBuffer[] _mBatchSlots;
+    private FloatBuffer[] _mBatchFloats;
+
+    private int[] _mPixel;
+
+    private final byte[] _mSignature = new byte[FrameSignature.SIZE];
+
+    private float[][] _mOutput;
+
+    private Classification _mResult;
+
+    private ModelDescriptor _mDescriptor;
+
+    /**
+     * Create the batch buffers for the given batch size. The buffers are kept until the batch size changes.
+     * @param BatchSize: Number of images per run
+     */
+    private void _allocateBatch(int BatchSize)
+    {
+        if((_mBatchSlots != null) && (_mBatchSlots.length == BatchSize))
+        {
+            return;
+        }
+
+        int ImageBytes = _mInput.capacity();
+
+        _mBatchInput = ByteBuffer.allocateDirect(BatchSize * ImageBytes);
+        _mBatchInput.order(ByteOrder.nativeOrder());
+
+        // Each slot is a view of one image in the contiguous batch buffer
+        _mBatchSlots = new ByteBuffer[BatchSize];
+        _mBatchFloats = new FloatBuffer[BatchSize];
+        for(int i = 0; i < BatchSize; i++)
+        {
+            _mBatchInput.position(i * ImageBytes);
+            _mBatchInput.limit((i + 1) * ImageBytes);
+            _mBatchSlots[i] = _mBatchInput.slice().order(ByteOrder.nativeOrder());
+            _mBatchFloats[i] = _mInputFormat.createFloatView(_mBatchSlots[i]);
+        }
+        _mBatchInput.clear();
+    }
+
+    /**
+     * Constructor. Creates the engine, the buffers for the input tensor of the model and runs an empty prediction.
+     * @param Factory: Factory for the inference engine
+     * @param TopK: Number of top classes of the result
+     * @throws IllegalArgumentException: The model uses an unsupported tensor type or shape
+     */
+    public PooledInterpreter(@NonNull IInferenceEngine.IFactory Factory, int TopK)
+    {
+        _mEngine = Factory.create();
+
+        try
+        {
+            _mDescriptor = ModelDescriptor.fromEngine(_mEngine);
+        }
+        catch(IllegalArgumentException e)
+        {
+            close();
+
+            throw e;
+        }
+
+        _mInputFormat = _mDescriptor.getInputFormat();
+        _mPixel = new int[_mDescriptor.getInputWidth() * _mDescriptor.getInputHeight()];
+
+        _mInput = _mInputFormat.allocate(_mDescriptor.getInputWidth(), _mDescriptor.getInputHeight(), _mDescriptor.getInputChannels());
+        _mInputFloats = _mInputFormat.createFloatView(_mInput);
+        _mOutput = new float[1][_mDescriptor.getClassCount()];
+
+        _mResult = new Classification(_mOutput[0], TopK);
+
+        // Perform an empty prediction, because the first result is wrong
+        // when the Android NN API is used. The prediction isn't recorded by the profiler
+        _mEngine.run(_mInput, 1);
+    }
+
+    /**
+     * Release the engine.
+     */
+    public void close()
+    {
+        if(_mEngine != null)
+        {
+            _mEngine.close();
+            _mEngine = null;
+        }
+    }
+
+    /**
+     * Get the geometry of the model.
+     * @return Model descriptor
+     */
+    public ModelDescriptor getDescriptor()
+    {
+        return _mDescriptor;
+    }
+
+    /**
+     * Get the result of the last run.
+     * @return Classification result
+     */
+    public Classification getResult()
+    {
+        return _mResult;
+    }
+
+    /**
+     * Get the input buffer of the model.
+     * @return Input buffer
+     */
+    public ByteBuffer getInput()
+    {
+        return _mInput;
+    }
+
+    /**
+     * Get the float view of the input buffer.
+     * @return Float view or null for a quantized input
+     */
+    public FloatBuffer getInputFloats()
+    {
+        return _mInputFloats;
+    }
+
+    /**
+     * Get the scratch array for the pixels of an image with the model input size.
+     * @return Pixel array
+     */
+    public int[] getPixels()
+    {
+        return _mPixel;
+    }
+
+    /**
+     * Get the signature of the current input.
+     * @return Signature for the result cache
+     */
+    public byte[] getSignature()
+    {
+        return _mSignature;
+    }
+
+    /**
+     * Copy an already preprocessed input and its signature into the interpreter.
+     * @param Input: Model input with the geometry of the model
+     * @param Signature: Signature of the input for the result cache
+     * @return true if the input matches the input buffer of the model
+     */
+    public boolean load(@NonNull ByteBuffer Input, @NonNull byte[] Signature)
+    {
+        if(Input.capacity() != _mInput.capacity())
+        {
+            return false;
+        }
+
+        ByteBuffer Source = Input.duplicate();
+        Source.rewind();
+
+        _mInput.rewind();
+        _mInput.put(Source);
+        _mInput.rewind();
+
+        System.arraycopy(Signature, 0, _mSignature, 0, _mSignature.length);
+
+        return true;
+    }
+
+    /**
+     * Run the model with the current input buffer. The result is updated with readResult.
+     */
+    public void run()
+    {
+        _mEngine.run(_mInput, 1);
+    }
+
+    /**
+     * Read the predictions of the last run with the current input buffer and update the result.
+     */
+    public void readResult()
+    {
+        _mEngine.readOutput(0, _mOutput[0]);
+        _mResult.update();
+    }
+
+    /**
+     * Run the model with a caller owned input buffer. The result of the interpreter isn't changed.
+     * @param Input: Preprocessed model input
+     */
+    public void run(@NonNull ByteBuffer Input)
+    {
+        _mEngine.run(Input, 1);
+    }
+
+    /**
+     * Read the predictions of the last run with a caller owned input buffer.
+     * @param Output: Array for the floating point predictions for each class
+     */
+    public void readOutput(@NonNull float[] Output)
+    {
+        _mEngine.readOutput(0, Output);
+    }
+
+    /**
+     * Get the input buffers for a batch. The images are packed into one contiguous buffer and
+     * each returned buffer is a view of one image. The buffers are kept as long as the batch size doesn't change.
+     * @param BatchSize: Number of images per run
+     * @return Input buffer for each image of the batch
+     */
+    public ByteBuffer[] getBatchInputs(int BatchSize)
+    {
+        _allocateBatch(BatchSize);
+
+        return _mBatchSlots;
+    }
+
+    /**
+     * Get the float views of the batch inputs from getBatchInputs.
+     * @return Float view for each image of the batch or null entries for a quantized input
+     */
+    public FloatBuffer[] getBatchFloats()
+    {
+        return _mBatchFloats;
+    }
+
+    /**
+     * Classify the images of the batch inputs with a single interpreter invocation.
+     * The batch dimension of the engine is resized if the batch size changes.
+     * @param BatchSize: Number of images, as used for getBatchInputs
+     * @param Results: Array for the floating point predictions. One row with the predictions for each class per image
+     */
+    public void runBatch(int BatchSize, @NonNull float[][] Results)
+    {
+        _mEngine.run(_mBatchInput, BatchSize);
+
+        for(int i = 0; i < BatchSize; i++)
+        {
+            _mEngine.readOutput(i, Results[i]);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.kampis_elektroecke.dogsvscats.ObjectDetection;
+
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+public class ResultCache
+{
+    private final byte[][] _mSignatures;
+
+    private final float[][] _mResults;
+
+    private final long[] _mTimestamps;
+
+    private final int _mTolerance;
+
+    private final long _mMaxAge;
+
+    private int _mCount;
+    private int _mNext;
+
+    private final AtomicLong _mHits = new AtomicLong();
+    private final AtomicLong _mMisses = new AtomicLong();
+
+    /**
+     * Constructor. The memory for all entries is allocated up front.
+     * @param Capacity: Number of cached results
+     * @param Classes: Number of classes of each result
+     * @param Tolerance: Largest mean luminance difference of a matching signature (0 - 255)
+     * @param MaxAge: Time in milliseconds after which an entry is classified again, even if the scene hasn't changed
+     */
+    public ResultCache(int Capacity, int Classes, int Tolerance, long MaxAge)
+    {
+        _mSignatures = new byte[Capacity][FrameSignature.SIZE];
+        _mResults = new float[Capacity][Classes];
+        _mTimestamps = new long[Capacity];
+        _mTolerance = Tolerance;
+        _mMaxAge = MaxAge;
+    }
+
+    /**
+     * Search a result with a similar signature.
+     * @param Signature: Signature of the current frame
+     * @param Result: Array for the cached predictions for each class
+     * @return true if a result was found and copied
+     */
+    public synchronized boolean lookup(@NonNull byte[] Signature, @NonNull float[] Result)
+    {
+        long Now = SystemClock.elapsedRealtime();
+
+        int Best = -1;
+        int BestDistance = Integer.MAX_VALUE;
+        for(int i = 0; i < _mCount; i++)
+        {
+            if((Now - _mTimestamps[i]) > _mMaxAge)
+            {
+                continue;
+            }
+
+            int Distance = FrameSignature.distance(Signature, _mSignatures[i]);
+            if(Distance < BestDistance)
+            {
+                Best = i;
+                BestDistance = Distance;
+            }
+        }
+
+        if((Best == -1) || (BestDistance > _mTolerance))
+        {
+            _mMisses.incrementAndGet();
+
+            return false;
+        }
+
+        System.arraycopy(_mResults[Best], 0, Result, 0, Math.min(Result.length, _mResults[Best].length));
+        _mHits.incrementAndGet();
+
+        return true;
+    }
+
+    /**
+     * Store a result. The oldest entry is replaced if the cache is full.
+     * @param Signature: Signature of the classified frame
+     * @param Result: Predictions for each class
+     */
+    public synchronized void put(@NonNull byte[] Signature, @NonNull float[] Result)
+    {
+        System.arraycopy(Signature, 0, _mSignatures[_mNext], 0, FrameSignature.SIZE);
+        System.arraycopy(Result, 0, _mResults[_mNext], 0, Math.min(Result.length, _mResults[_mNext].length));
+        _mTimestamps[_mNext] = SystemClock.elapsedRealtime();
+
+        _mNext = (_mNext + 1) % _mSignatures.length;
+        _mCount = Math.min(_mCount + 1, _mSignatures.length);
+    }
+
+    /**
+     * Remove all entries and reset the counters.
+     */
+    public synchronized void clear()
+    {
+        _mCount = 0;
+        _mNext = 0;
+        _mHits.set(0);
+        _mMisses.set(0);
+    }
+
+    /**
+     * Get the number of frames which used a cached result.
+     * @return Hit count
+     */
+    public long getHits()
+    {
+        return _mHits.get();
+    }
+
+    /**
+     * Get the number of frames which had to be classified.
+     * @return Miss count
+     */
+    public long getMisses()
+    {
+        return _mMisses.get();
+    }
+}
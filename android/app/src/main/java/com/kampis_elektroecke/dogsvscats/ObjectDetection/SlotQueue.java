@@ -0,0 +1,79 @@
+package com.kampis_elektroecke.dogsvscats.ObjectDetection;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded lock-free queue of slot indices between exactly one producer thread and one consumer thread.
+ * Each counter is only written by its own thread, so the queue needs no lock and no compare and swap.
+ */
+public class SlotQueue
+{
+    private final int[] _mSlots;
+
+    private final int _mMask;
+
+    /**
+     * Next read position. Only written by the consumer.
+     */
+    private final AtomicInteger _mHead = new AtomicInteger();
+
+    /**
+     * Next write position. Only written by the producer.
+     */
+    private final AtomicInteger _mTail = new AtomicInteger();
+
+    /**
+     * Constructor.
+     * @param Capacity: Smallest number of entries. The capacity is rounded up to a power of two
+     */
+    public SlotQueue(int Capacity)
+    {
+        int Size = Integer.highestOneBit(Math.max(1, Capacity));
+        if(Size < Capacity)
+        {
+            Size <<= 1;
+        }
+
+        _mSlots = new int[Size];
+        _mMask = Size - 1;
+    }
+
+    /**
+     * Add a slot. Must only be called by the producer thread.
+     * @param Slot: Slot index
+     * @return false if the queue is full
+     */
+    public boolean offer(int Slot)
+    {
+        int Tail = _mTail.get();
+        if((Tail - _mHead.get()) == _mSlots.length)
+        {
+            return false;
+        }
+
+        _mSlots[Tail & _mMask] = Slot;
+
+        // Publish the entry and all writes to the slot before the new tail
+        _mTail.lazySet(Tail + 1);
+
+        return true;
+    }
+
+    /**
+     * Remove the oldest slot. Must only be called by the consumer thread.
+     * @return Slot index or -1 if the queue is empty
+     */
+    public int poll()
+    {
+        int Head = _mHead.get();
+        if(Head == _mTail.get())
+        {
+            return -1;
+        }
+
+        int Slot = _mSlots[Head & _mMask];
+        _mHead.lazySet(Head + 1);
+
+        return Slot;
+    }
+}
@@ -0,0 +1,144 @@
+package com.kampis_elektroecke.dogsvscats.ObjectDetection;
+
+import androidx.annotation.NonNull;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Deterministic stand-in for the model without native code.
+ * The predicted class is derived from a checksum of the input, so the same image always gets the same result.
+ * The engine busy waits for the configured latency to simulate the CPU load of the inference.
+ */
+public class SyntheticEngine implements IInferenceEngine
+{
+    private final InputFormat _mInputFormat;
+
+    private final int[] _mInputShape;
+
+    private final int _mClasses;
+
+    private final long _mLatencyNs;
+
+    private final float _mPeak;
+
+    private int[] _mBest = new int[1];
+
+    /**
+     * Create a factory for synthetic engines.
+     * @param Format: Input format
+     * @param Width: Input width
+     * @param Height: Input height
+     * @param Channels: Input channels
+     * @param Classes: Number of classes
+     * @param LatencyUs: Simulated latency of each image in microseconds
+     * @param Peak: Prediction of the best class (0 - 1). The rest is distributed evenly over the other classes
+     * @return Engine factory
+     */
+    public static IFactory Factory(@NonNull final InputFormat Format, final int Width, final int Height, final int Channels,
+                                   final int Classes, final long LatencyUs, final float Peak)
+    {
+        return () -> new SyntheticEngine(Format, Width, Height, Channels, Classes, LatencyUs, Peak);
+    }
+
+    /**
+     * Create a factory for synthetic engines with the geometry of a model.
+     * @param Descriptor: Geometry and input format of the replaced model
+     * @param LatencyUs: Simulated latency of each image in microseconds
+     * @param Peak: Prediction of the best class (0 - 1). The rest is distributed evenly over the other classes
+     * @return Engine factory
+     */
+    public static IFactory Factory(@NonNull ModelDescriptor Descriptor, long LatencyUs, float Peak)
+    {
+        return Factory(Descriptor.getInputFormat(), Descriptor.getInputWidth(), Descriptor.getInputHeight(),
+                       Descriptor.getInputChannels(), Descriptor.getClassCount(), LatencyUs, Peak);
+    }
+
+    /**
+     * Constructor.
+     * @param Format: Input format
+     * @param Width: Input width
+     * @param Height: Input height
+     * @param Channels: Input channels
+     * @param Classes: Number of classes
+     * @param LatencyUs: Simulated latency of each image in microseconds
+     * @param Peak: Prediction of the best class (0 - 1). The rest is distributed evenly over the other classes
+     */
+    public SyntheticEngine(@NonNull InputFormat Format, int Width, int Height, int Channels, int Classes, long LatencyUs, float Peak)
+    {
+        if(Classes < 1)
+        {
+            throw new IllegalArgumentException("Invalid class count: " + Classes);
+        }
+
+        _mInputFormat = Format;
+        _mInputShape = new int[] {1, Height, Width, Channels};
+        _mClasses = Classes;
+        _mLatencyNs = LatencyUs * 1000L;
+        _mPeak = Math.max(0.0f, Math.min(1.0f, Peak));
+    }
+
+    @Override
+    public InputFormat getInputFormat()
+    {
+        return _mInputFormat;
+    }
+
+    @Override
+    public int[] getInputShape()
+    {
+        return _mInputShape.clone();
+    }
+
+    @Override
+    public int getClassCount()
+    {
+        return _mClasses;
+    }
+
+    @Override
+    public void run(@NonNull ByteBuffer Input, int BatchSize)
+    {
+        // The array only grows, so a constant batch size doesn't allocate memory
+        if(BatchSize > _mBest.length)
+        {
+            _mBest = new int[BatchSize];
+        }
+
+        long End = System.nanoTime() + (BatchSize * _mLatencyNs);
+
+        // Sample every 61st byte of each image, so the checksum covers all rows and channels
+        int ImageBytes = Input.capacity() / BatchSize;
+        for(int i = 0; i < BatchSize; i++)
+        {
+            int Checksum = 0;
+            for(int j = i * ImageBytes; j < ((i + 1) * ImageBytes); j += 61)
+            {
+                Checksum = (31 * Checksum) + Input.get(j);
+            }
+
+            _mBest[i] = (Checksum & Integer.MAX_VALUE) % _mClasses;
+        }
+
+        while(System.nanoTime() < End)
+        {
+            // Busy wait to keep the core loaded like the real inference
+        }
+    }
+
+    @Override
+    public void readOutput(int Index, @NonNull float[] Output)
+    {
+        float Rest = (_mClasses > 1) ? ((1.0f - _mPeak) / (_mClasses - 1)) : 0.0f;
+        int Count = Math.min(Output.length, _mClasses);
+
+        for(int i = 0; i < Count; i++)
+        {
+            Output[i] = (i == _mBest[Index]) ? _mPeak : Rest;
+        }
+    }
+
+    @Override
+    public void close()
+    {
+    }
+}
@@ -0,0 +1,283 @@
+package com.kampis_elektroecke.dogsvscats.ObjectDetection;
+
+import androidx.annotation.NonNull;
+
+import org.tensorflow.lite.DataType;
+import org.tensorflow.lite.Interpreter;
+import org.tensorflow.lite.Tensor;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+public class TfLiteEngine implements IInferenceEngine
+{
+    private Interpreter _mTfLite;
+
+    /**
+     * Second interpreter for batches with more than one image. It is created with the first batch,
+     * so that single images and batches don't resize the tensors of the same interpreter for each call.
+     */
+    private Interpreter _mBatchTfLite;
+
+    private final ByteBuffer _mModel;
+
+    private final Interpreter.Options _mOptions;
+
+    private InputFormat _mInputFormat;
+
+    private final Normalization _mNormalization;
+
+    private int[] _mInputShape;
+
+    private int _mBatchSize;
+
+    private int _mClasses;
+
+    private boolean _mOutputQuantized;
+    private float _mOutputScale;
+    private int _mOutputZeroPoint;
+    private boolean _mOutputSigned;
+
+    private int _mOutputBytes;
+
+    /**
+     * Output buffers for each batch size, indexed by the batch size.
+     */
+    private ByteBuffer[] _mOutputs;
+
+    private ByteBuffer _mOutput;
+
+    /**
+     * Read the data types and the quantization of the model tensors.
+     * @throws IllegalArgumentException: The model uses an unsupported tensor type
+     */
+    private void _configureTensors()
+    {
+        Tensor Input = _mTfLite.getInputTensor(0);
+        Tensor Output = _mTfLite.getOutputTensor(0);
+
+        switch(Input.dataType())
+        {
+            case FLOAT32:
+            {
+                _mInputFormat = InputFormat.Float(_mNormalization);
+
+                break;
+            }
+            case UINT8:
+            case INT8:
+            {
+                Tensor.QuantizationParams Params = Input.quantizationParams();
+                _mInputFormat = InputFormat.Quantized(Params.getScale(), Params.getZeroPoint(), Input.dataType() == DataType.INT8, _mNormalization);
+
+                break;
+            }
+            default:
+            {
+                throw new IllegalArgumentException("Unsupported input type: " + Input.dataType());
+            }
+        }
+
+        _mInputShape = Input.shape();
+
+        switch(Output.dataType())
+        {
+            case FLOAT32:
+            {
+                _mOutputQuantized = false;
+
+                break;
+            }
+            case UINT8:
+            case INT8:
+            {
+                Tensor.QuantizationParams Params = Output.quantizationParams();
+                _mOutputQuantized = true;
+                _mOutputScale = (Params.getScale() == 0.0f) ? 1.0f : Params.getScale();
+                _mOutputZeroPoint = Params.getZeroPoint();
+                _mOutputSigned = (Output.dataType() == DataType.INT8);
+
+                break;
+            }
+            default:
+            {
+                throw new IllegalArgumentException("Unsupported output type: " + Output.dataType());
+            }
+        }
+
+        int[] OutputShape = Output.shape();
+        _mClasses = OutputShape[OutputShape.length - 1];
+        _mOutputBytes = Output.numBytes();
+
+        _mOutputs = new ByteBuffer[2];
+        _mOutput = _getOutput(1);
+    }
+
+    /**
+     * Get the output buffer for a batch size. The buffers are allocated once for each batch size.
+     * @param BatchSize: Number of images per run
+     * @return Output buffer
+     */
+    private ByteBuffer _getOutput(int BatchSize)
+    {
+        if(BatchSize >= _mOutputs.length)
+        {
+            ByteBuffer[] Outputs = new ByteBuffer[BatchSize + 1];
+            System.arraycopy(_mOutputs, 0, Outputs, 0, _mOutputs.length);
+            _mOutputs = Outputs;
+        }
+
+        if(_mOutputs[BatchSize] == null)
+        {
+            _mOutputs[BatchSize] = ByteBuffer.allocateDirect(BatchSize * _mOutputBytes);
+            _mOutputs[BatchSize].order(ByteOrder.nativeOrder());
+        }
+
+        return _mOutputs[BatchSize];
+    }
+
+    /**
+     * Get the interpreter for a batch size. Single images use the interpreter of the model shape.
+     * The batch interpreter is only resized if the batch size differs from its last run.
+     * @param BatchSize: Number of images per run
+     * @return Interpreter
+     */
+    private Interpreter _getInterpreter(int BatchSize)
+    {
+        if(BatchSize == 1)
+        {
+            return _mTfLite;
+        }
+
+        if(_mBatchTfLite == null)
+        {
+            _mBatchTfLite = new Interpreter(_mModel, _mOptions);
+            _mBatchSize = 1;
+        }
+
+        if(_mBatchSize != BatchSize)
+        {
+            int[] Shape = _mInputShape.clone();
+            Shape[0] = BatchSize;
+
+            _mBatchTfLite.resizeInput(0, Shape);
+            _mBatchTfLite.allocateTensors();
+
+            _mBatchSize = BatchSize;
+        }
+
+        return _mBatchTfLite;
+    }
+
+    /**
+     * Create a factory for engines with a shared model buffer.
+     * @param Model: Model data. The buffer is shared by all engines and must not be modified
+     * @param Options: Interpreter options
+     * @param Normalization: Normalization of the input, which the model was trained with
+     * @return Engine factory
+     */
+    public static IFactory Factory(@NonNull final ByteBuffer Model, @NonNull final Interpreter.Options Options, @NonNull final Normalization Normalization)
+    {
+        return () -> new TfLiteEngine(Model, Options, Normalization);
+    }
+
+    /**
+     * Constructor.
+     * @param Model: Model data
+     * @param Options: Interpreter options
+     * @param Normalization: Normalization of the input, which the model was trained with
+     * @throws IllegalArgumentException: The model uses an unsupported tensor type
+     */
+    public TfLiteEngine(@NonNull ByteBuffer Model, @NonNull Interpreter.Options Options, @NonNull Normalization Normalization)
+    {
+        _mNormalization = Normalization;
+        _mModel = Model;
+        _mOptions = Options;
+        _mTfLite = new Interpreter(Model, Options);
+
+        try
+        {
+            _configureTensors();
+        }
+        catch(IllegalArgumentException e)
+        {
+            _mTfLite.close();
+
+            throw e;
+        }
+    }
+
+    @Override
+    public InputFormat getInputFormat()
+    {
+        return _mInputFormat;
+    }
+
+    @Override
+    public int[] getInputShape()
+    {
+        return _mInputShape.clone();
+    }
+
+    @Override
+    public int getClassCount()
+    {
+        return _mClasses;
+    }
+
+    @Override
+    public void run(@NonNull ByteBuffer Input, int BatchSize)
+    {
+        Interpreter TfLite = _getInterpreter(BatchSize);
+        _mOutput = _getOutput(BatchSize);
+
+        Input.rewind();
+        _mOutput.rewind();
+        TfLite.run(Input, _mOutput);
+    }
+
+    /**
+     * Copy the output of one image. Quantized outputs are dequantized with p = scale * (q - zero point).
+     * @param Index: Index of the image in the batch
+     * @param Output: Array for the predictions for each class
+     */
+    @Override
+    public void readOutput(int Index, @NonNull float[] Output)
+    {
+        int Offset = Index * _mOutputBytes;
+        int Count = Math.min(Output.length, _mClasses);
+
+        if(_mOutputQuantized)
+        {
+            for(int i = 0; i < Count; i++)
+            {
+                int Value = _mOutputSigned ? _mOutput.get(Offset + i) : (_mOutput.get(Offset + i) & 0xFF);
+
+                Output[i] = _mOutputScale * (Value - _mOutputZeroPoint);
+            }
+        }
+        else
+        {
+            for(int i = 0; i < Count; i++)
+            {
+                Output[i] = _mOutput.getFloat(Offset + (4 * i));
+            }
+        }
+    }
+
+    @Override
+    public void close()
+    {
+        if(_mTfLite != null)
+        {
+            _mTfLite.close();
+            _mTfLite = null;
+        }
+
+        if(_mBatchTfLite != null)
+        {
+            _mBatchTfLite.close();
+            _mBatchTfLite = null;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.kampis_elektroecke.dogsvscats.Profiling;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+public class LatencyHistogram
+{
+    // Each power of two is split into 8 buckets, so the relative error of a percentile is below 12.5 %
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    // Latencies above 2^27 us (~134 s) are counted in the last bucket
+    private static final int MAX_EXPONENT = 27;
+    private static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    private final AtomicLongArray _mBuckets = new AtomicLongArray(BUCKETS);
+
+    private final AtomicLong _mCount = new AtomicLong();
+    private final AtomicLong _mSum = new AtomicLong();
+    private final AtomicLong _mMax = new AtomicLong();
+
+    /**
+     * Get the bucket index of a latency.
+     * @param Value: Latency in microseconds
+     * @return Bucket index
+     */
+    private static int _getIndex(long Value)
+    {
+        if(Value < SUB_BUCKETS)
+        {
+            return (int)Math.max(0, Value);
+        }
+
+        int Exponent = Math.min(63 - Long.numberOfLeadingZeros(Value), MAX_EXPONENT);
+        int Shift = Exponent - SUB_BUCKET_BITS;
+        int Sub = (int)((Math.min(Value, (2L << MAX_EXPONENT) - 1) >> Shift) & (SUB_BUCKETS - 1));
+
+        return ((Shift + 1) * SUB_BUCKETS) + Sub;
+    }
+
+    /**
+     * Get the largest latency of a bucket.
+     * @param Index: Bucket index
+     * @return Latency in microseconds
+     */
+    private static long _getUpperBound(int Index)
+    {
+        if(Index < SUB_BUCKETS)
+        {
+            return Index;
+        }
+
+        int Shift = (Index / SUB_BUCKETS) - 1;
+
+        return ((long)(SUB_BUCKETS + (Index % SUB_BUCKETS) + 1) << Shift) - 1;
+    }
+
+    /**
+     * Record a latency. The method is lock free and doesn't allocate memory.
+     * @param Microseconds: Latency in microseconds
+     */
+    public void record(long Microseconds)
+    {
+        _mBuckets.incrementAndGet(_getIndex(Microseconds));
+        _mCount.incrementAndGet();
+        _mSum.addAndGet(Microseconds);
+
+        long Max = _mMax.get();
+        while((Microseconds > Max) && !_mMax.compareAndSet(Max, Microseconds))
+        {
+            Max = _mMax.get();
+        }
+    }
+
+    /**
+     * Remove all recorded latencies.
+     */
+    public void reset()
+    {
+        for(int i = 0; i < BUCKETS; i++)
+        {
+            _mBuckets.set(i, 0);
+        }
+
+        _mCount.set(0);
+        _mSum.set(0);
+        _mMax.set(0);
+    }
+
+    /**
+     * Get the number of recorded latencies.
+     * @return Sample count
+     */
+    public long getCount()
+    {
+        return _mCount.get();
+    }
+
+    /**
+     * Get the mean latency.
+     * @return Mean latency in microseconds or 0 if nothing was recorded
+     */
+    public long getMean()
+    {
+        long Count = _mCount.get();
+
+        return (Count > 0) ? (_mSum.get() / Count) : 0;
+    }
+
+    /**
+     * Get the largest recorded latency.
+     * @return Latency in microseconds
+     */
+    public long getMax()
+    {
+        return _mMax.get();
+    }
+
+    /**
+     * Get a percentile of the recorded latencies.
+     * The result is the upper bound of the bucket which contains the percentile, but never more than the maximum.
+     * @param Percentile: Percentile between 0 and 100
+     * @return Latency in microseconds or 0 if nothing was recorded
+     */
+    public long getPercentile(double Percentile)
+    {
+        long Count = _mCount.get();
+        if(Count == 0)
+        {
+            return 0;
+        }
+
+        long Target = Math.max(1, (long)Math.ceil((Percentile / 100.0) * Count));
+        long Sum = 0;
+
+        for(int i = 0; i < BUCKETS; i++)
+        {
+            Sum += _mBuckets.get(i);
+            if((Sum >= Target) && (i < (BUCKETS - 1)))
+            {
+                return Math.min(_getUpperBound(i), _mMax.get());
+            }
+        }
+
+        return _mMax.get();
+    }
+}
@@ -0,0 +1,155 @@
+package com.kampis_elektroecke.dogsvscats.Profiling;
+
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+
+import java.util.Locale;
+
+public class Profiler
+{
+    public enum Stage
+    {
+        CAPTURE(true),
+        DECODE(false),
+        PREPROCESS(false),
+        INFERENCE(false),
+        POSTPROCESS(false),
+        UI_UPDATE(false);
+
+        private final boolean _mAsync;
+
+        /**
+         * Constructor.
+         * @param Async: true if the stage ends on another thread than it begins
+         */
+        Stage(boolean Async)
+        {
+            _mAsync = Async;
+        }
+    }
+
+    private static final LatencyHistogram[] _mHistograms = new LatencyHistogram[Stage.values().length];
+
+    private static volatile boolean _mEnabled = true;
+
+    static
+    {
+        for(int i = 0; i < _mHistograms.length; i++)
+        {
+            _mHistograms[i] = new LatencyHistogram();
+        }
+    }
+
+    /**
+     * Enable or disable the recording. The recording is enabled by default.
+     * @param Enabled: true to record the stage latencies
+     */
+    public static void setEnabled(boolean Enabled)
+    {
+        _mEnabled = Enabled;
+    }
+
+    /**
+     * Check if the recording is enabled.
+     * @return true if the stage latencies are recorded
+     */
+    public static boolean isEnabled()
+    {
+        return _mEnabled;
+    }
+
+    /**
+     * Start the measurement of a stage. The stage is also emitted as trace section if the tracer is enabled.
+     * Stages which end on another thread are emitted as asynchronous trace event.
+     * @param PipelineStage: Measured stage
+     * @return Start time for end or 0 if the recording is disabled
+     */
+    public static long begin(@NonNull Stage PipelineStage)
+    {
+        if(PipelineStage._mAsync)
+        {
+            Tracer.beginAsyncSection(PipelineStage.name(), 0);
+        }
+        else
+        {
+            Tracer.beginSection(PipelineStage.name());
+        }
+
+        return _mEnabled ? SystemClock.elapsedRealtimeNanos() : 0;
+    }
+
+    /**
+     * Stop the measurement of a stage and record the latency.
+     * @param PipelineStage: Measured stage
+     * @param Start: Start time from begin
+     */
+    public static void end(@NonNull Stage PipelineStage, long Start)
+    {
+        if(PipelineStage._mAsync)
+        {
+            Tracer.endAsyncSection(PipelineStage.name(), 0);
+        }
+        else
+        {
+            Tracer.endSection();
+        }
+
+        if(Start != 0)
+        {
+            _mHistograms[PipelineStage.ordinal()].record((SystemClock.elapsedRealtimeNanos() - Start) / 1000);
+        }
+    }
+
+    /**
+     * Get the latency histogram of a stage.
+     * @param PipelineStage: Stage
+     * @return Histogram with the latencies in microseconds
+     */
+    public static LatencyHistogram getHistogram(@NonNull Stage PipelineStage)
+    {
+        return _mHistograms[PipelineStage.ordinal()];
+    }
+
+    /**
+     * Remove the recorded latencies of all stages.
+     */
+    public static void reset()
+    {
+        for(LatencyHistogram Histogram : _mHistograms)
+        {
+            Histogram.reset();
+        }
+    }
+
+    /**
+     * Get a text with the percentiles of each recorded stage.
+     * The text starts with a header line, followed by one line per stage with p50/p90/p99/max in milliseconds.
+     * @return Summary text
+     */
+    public static String getSummary()
+    {
+        StringBuilder Summary = new StringBuilder(String.format(Locale.US, "%-11s %7s %7s %7s %7s", "Stage", "p50", "p90", "p99", "max"));
+
+        for(Stage PipelineStage : Stage.values())
+        {
+            LatencyHistogram Histogram = _mHistograms[PipelineStage.ordinal()];
+            if(Histogram.getCount() == 0)
+            {
+                continue;
+            }
+
+            Summary.append('\n');
+            Summary.append(String.format(Locale.US, "%-11s %7.1f %7.1f %7.1f %7.1f ms (%d)",
+                    PipelineStage.name(),
+                    Histogram.getPercentile(50) / 1000.0f,
+                    Histogram.getPercentile(90) / 1000.0f,
+                    Histogram.getPercentile(99) / 1000.0f,
+                    Histogram.getMax() / 1000.0f,
+                    Histogram.getCount()
+            ));
+        }
+
+        return Summary.toString();
+    }
+}
@@ -0,0 +1,81 @@
+package com.kampis_elektroecke.dogsvscats.Profiling;
+
+import android.os.Build;
+import android.os.Trace;
+
+import androidx.annotation.NonNull;
+
+public class Tracer
+{
+    private static volatile boolean _mEnabled = false;
+
+    /**
+     * Enable or disable the trace events. The events are disabled by default.
+     * A disabled tracer only costs the check of a volatile flag.
+     * Sections which are open while the tracer is switched can be unbalanced in the trace.
+     * @param Enabled: true to emit trace events for Perfetto and systrace
+     */
+    public static void setEnabled(boolean Enabled)
+    {
+        _mEnabled = Enabled;
+    }
+
+    /**
+     * Check if trace events are emitted.
+     * @return true if the tracer is enabled
+     */
+    public static boolean isEnabled()
+    {
+        return _mEnabled;
+    }
+
+    /**
+     * Begin a trace section on the current thread. Each section must be closed with endSection on the same thread.
+     * @param Name: Name of the section. Use constant strings to avoid allocations
+     */
+    public static void beginSection(@NonNull String Name)
+    {
+        if(_mEnabled)
+        {
+            Trace.beginSection(Name);
+        }
+    }
+
+    /**
+     * End the last trace section of the current thread.
+     */
+    public static void endSection()
+    {
+        if(_mEnabled)
+        {
+            Trace.endSection();
+        }
+    }
+
+    /**
+     * Begin an asynchronous trace event. The event can be closed on another thread.
+     * Asynchronous events need Android 10, they are ignored on older devices.
+     * @param Name: Name of the event
+     * @param Cookie: Identifier of the event. Overlapping events with the same name need different cookies
+     */
+    public static void beginAsyncSection(@NonNull String Name, int Cookie)
+    {
+        if(_mEnabled && (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q))
+        {
+            Trace.beginAsyncSection(Name, Cookie);
+        }
+    }
+
+    /**
+     * End an asynchronous trace event.
+     * @param Name: Name of the event
+     * @param Cookie: Identifier of the event from beginAsyncSection
+     */
+    public static void endAsyncSection(@NonNull String Name, int Cookie)
+    {
+        if(_mEnabled && (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q))
+        {
+            Trace.endAsyncSection(Name, Cookie);
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.kampis_elektroecke.dogsvscats;
+
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.ProgressBar;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+
+import com.kampis_elektroecke.dogsvscats.ObjectDetection.Classification;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Shows the top classes of a classification result. The rows are created once per label set
+ * and only the changed texts and confidence bars are updated, so a continuous result stream
+ * doesn't allocate views or trigger layout passes on the main thread.
+ */
+public class ResultPresenter
+{
+    private static class Row
+    {
+        final View Root;
+        final TextView Label;
+        final ProgressBar Bar;
+        final TextView Score;
+
+        /**
+         * Score as text "0.00". The TextView references the array, so it is only changed right before setText.
+         */
+        final char[] ScoreText = new char[4];
+
+        int Index = -1;
+        int Percent = -1;
+
+        /**
+         * Constructor.
+         * @param Root: Inflated row
+         */
+        Row(@NonNull View Root)
+        {
+            this.Root = Root;
+            this.Label = Root.findViewById(R.id.TextResultLabel);
+            this.Bar = Root.findViewById(R.id.ProgressResult);
+            this.Score = Root.findViewById(R.id.TextResultScore);
+        }
+    }
+
+    private final ViewGroup _mContainer;
+
+    private final LayoutInflater _mInflater;
+
+    private final List<Row> _mRows = new ArrayList<>();
+
+    private List<String> _mLabels;
+
+    private int _mVisibleRows;
+
+    /**
+     * Constructor.
+     * @param Container: View group for the result rows
+     */
+    public ResultPresenter(@NonNull ViewGroup Container)
+    {
+        _mContainer = Container;
+        _mInflater = LayoutInflater.from(Container.getContext());
+    }
+
+    /**
+     * Create the rows for a label set. Nothing is done if the labels haven't changed.
+     * @param Labels: Class labels
+     * @param Rows: Maximum number of shown classes
+     */
+    public void setLabels(@NonNull List<String> Labels, int Rows)
+    {
+        Rows = Math.min(Rows, Labels.size());
+
+        if((Labels == _mLabels) && (Rows == _mRows.size()))
+        {
+            return;
+        }
+
+        _mLabels = Labels;
+        _mRows.clear();
+        _mContainer.removeAllViews();
+
+        for(int i = 0; i < Rows; i++)
+        {
+            Row Entry = new Row(_mInflater.inflate(R.layout.view_result, _mContainer, false));
+            Entry.Root.setVisibility(View.GONE);
+
+            _mRows.add(Entry);
+            _mContainer.addView(Entry.Root);
+        }
+
+        _mVisibleRows = 0;
+    }
+
+    /**
+     * Show the top classes of a result. Only the rows which have changed are updated.
+     * @param Result: Classification result
+     */
+    public void show(@NonNull Classification Result)
+    {
+        int Count = Math.min(Result.getTopCount(), _mRows.size());
+
+        for(int i = 0; i < Count; i++)
+        {
+            Row Entry = _mRows.get(i);
+            int Index = Result.getTopIndex(i);
+            int Percent = Math.max(0, Math.min(100, Math.round(Result.getTopScore(i) * 100.0f)));
+
+            if(Index != Entry.Index)
+            {
+                Entry.Label.setText((Index < _mLabels.size()) ? _mLabels.get(Index) : Integer.toString(Index));
+                Entry.Index = Index;
+            }
+
+            if(Percent != Entry.Percent)
+            {
+                Entry.ScoreText[0] = (char)('0' + (Percent / 100));
+                Entry.ScoreText[1] = '.';
+                Entry.ScoreText[2] = (char)('0' + ((Percent / 10) % 10));
+                Entry.ScoreText[3] = (char)('0' + (Percent % 10));
+                Entry.Score.setText(Entry.ScoreText, 0, Entry.ScoreText.length);
+                Entry.Bar.setProgress(Percent);
+                Entry.Percent = Percent;
+            }
+        }
+
+        // The number of shown rows only changes if the model returns fewer classes
+        if(Count != _mVisibleRows)
+        {
+            for(int i = 0; i < _mRows.size(); i++)
+            {
+                _mRows.get(i).Root.setVisibility((i < Count) ? View.VISIBLE : View.GONE);
+            }
+
+            _mVisibleRows = Count;
+        }
+    }
+
+    /**
+     * Remove all rows.
+     */
+    public void clear()
+    {
+        _mLabels = null;
+        _mRows.clear();
+        _mContainer.removeAllViews();
+        _mVisibleRows = 0;
+    }
+}
@@ -36,13 +36,23 @@ public class SettingsFragment extends Fragment
     private TextView _mModelInputChannels;
 
     private Switch _mUseNNAPI;
+    private Switch _mAutoTune;
     private Switch _mUseAudio;
+    private Switch _mUseYUV;
+    private Switch _mContinuous;
+    private Switch _mZeroShutterLag;
+    private Switch _mFrameCache;
+    private Switch _mLatencyOverlay;
+    private Switch _mTracing;
+    private Switch _mSyntheticEngine;
 
     private Spinner _mThreads;
+    private Spinner _mInterpreters;
 
     private ArrayAdapter<String> _mResolutionAdapter;
     private ArrayAdapter<String> _mLanguageAdapter;
     private ArrayAdapter<String> _mThreadsAdapter;
+    private ArrayAdapter<String> _mInterpretersAdapter;
 
     /**
      *  Small method to get the view and avoid the warning
@@ -86,12 +96,25 @@ public class SettingsFragment extends Fragment
         Index = _mThreadsAdapter.getPosition(Data.getString("Threads"));
         _mThreads.setSelection(Index);
 
+        Index = _mInterpretersAdapter.getPosition(Data.getString("Interpreters"));
+        _mInterpreters.setSelection(Index);
+
         _mModelInputWidth.setText(Data.getString("ModelInputWidth"));
         _mModelInputHeight.setText(Data.getString("ModelInputHeight"));
         _mModelInputChannels.setText(Data.getString("ModelInputChannel"));
 
         _mUseNNAPI.setChecked(Data.getBoolean("UseNNAPI"));
+        _mAutoTune.setChecked(Data.getBoolean("AutoTune"));
+        _mUseNNAPI.setEnabled(!Data.getBoolean("AutoTune"));
+        _mThreads.setEnabled(!Data.getBoolean("AutoTune"));
         _mUseAudio.setChecked(Data.getBoolean("UseAudio"));
+        _mUseYUV.setChecked(Data.getBoolean("UseYUV"));
+        _mContinuous.setChecked(Data.getBoolean("Continuous"));
+        _mZeroShutterLag.setChecked(Data.getBoolean("ZeroShutterLag"));
+        _mFrameCache.setChecked(Data.getBoolean("FrameCache"));
+        _mLatencyOverlay.setChecked(Data.getBoolean("LatencyOverlay"));
+        _mTracing.setChecked(Data.getBoolean("Tracing"));
+        _mSyntheticEngine.setChecked(Data.getBoolean("SyntheticEngine"));
     }
 
     /**
@@ -129,6 +152,17 @@ public class SettingsFragment extends Fragment
 
         _mThreadsAdapter = new ArrayAdapter<>(getContext(), android.R.layout.simple_spinner_item, Threads);
 
+        /*
+         * Fill the "Interpreters" spinner
+         */
+        ArrayList<String> Interpreters = new ArrayList<>();
+        for(int i = 1; i < 5; i++)
+        {
+            Interpreters.add(Integer.toString(i));
+        }
+
+        _mInterpretersAdapter = new ArrayAdapter<>(getContext(), android.R.layout.simple_spinner_item, Interpreters);
+
         /*
          * Fill the "Camera resolution" spinner
          */
@@ -213,6 +247,74 @@ public class SettingsFragment extends Fragment
                 _mSettings.putBoolean("UseNNAPI", _mUseNNAPI.isChecked())
         );
 
+        /*
+         * "Use YUV" checkbox
+         */
+        _mUseYUV = _getView().findViewById(R.id.SwitchUseYUV);
+        _mUseYUV.setOnCheckedChangeListener((view, isChecked) ->
+                _mSettings.putBoolean("UseYUV", _mUseYUV.isChecked())
+        );
+
+        /*
+         * "Continuous mode" checkbox
+         */
+        _mContinuous = _getView().findViewById(R.id.SwitchContinuous);
+        _mContinuous.setOnCheckedChangeListener((view, isChecked) ->
+                _mSettings.putBoolean("Continuous", _mContinuous.isChecked())
+        );
+
+        /*
+         * "Zero shutter lag" checkbox
+         */
+        _mZeroShutterLag = _getView().findViewById(R.id.SwitchZeroShutterLag);
+        _mZeroShutterLag.setOnCheckedChangeListener((view, isChecked) ->
+                _mSettings.putBoolean("ZeroShutterLag", _mZeroShutterLag.isChecked())
+        );
+
+        /*
+         * "Frame cache" checkbox
+         */
+        _mFrameCache = _getView().findViewById(R.id.SwitchFrameCache);
+        _mFrameCache.setOnCheckedChangeListener((view, isChecked) ->
+                _mSettings.putBoolean("FrameCache", _mFrameCache.isChecked())
+        );
+
+        /*
+         * "Latency overlay" checkbox
+         */
+        _mLatencyOverlay = _getView().findViewById(R.id.SwitchLatencyOverlay);
+        _mLatencyOverlay.setOnCheckedChangeListener((view, isChecked) ->
+                _mSettings.putBoolean("LatencyOverlay", _mLatencyOverlay.isChecked())
+        );
+
+        /*
+         * "Trace events" checkbox
+         */
+        _mTracing = _getView().findViewById(R.id.SwitchTracing);
+        _mTracing.setOnCheckedChangeListener((view, isChecked) ->
+                _mSettings.putBoolean("Tracing", _mTracing.isChecked())
+        );
+
+        /*
+         * "Synthetic engine" checkbox
+         */
+        _mSyntheticEngine = _getView().findViewById(R.id.SwitchSyntheticEngine);
+        _mSyntheticEngine.setOnCheckedChangeListener((view, isChecked) ->
+                _mSettings.putBoolean("SyntheticEngine", _mSyntheticEngine.isChecked())
+        );
+
+        /*
+         * "Auto tune" checkbox
+         */
+        _mAutoTune = _getView().findViewById(R.id.SwitchAutoTune);
+        _mAutoTune.setOnCheckedChangeListener((view, isChecked) ->
+                {
+                    _mSettings.putBoolean("AutoTune", _mAutoTune.isChecked());
+                    _mUseNNAPI.setEnabled(!_mAutoTune.isChecked());
+                    _mThreads.setEnabled(!_mAutoTune.isChecked());
+                }
+        );
+
         /*
          * "Use Audio" checkbox
          */
@@ -244,6 +346,27 @@ public class SettingsFragment extends Fragment
                                                      }
 
         );
+
+        /*
+         * "Interpreters" spinner
+         */
+        _mInterpreters = _getView().findViewById(R.id.SpinnerInterpreters);
+        _mInterpreters.setAdapter(_mInterpretersAdapter);
+        _mInterpreters.setOnItemSelectedListener(new AdapterView.OnItemSelectedListener()
+                                                     {
+                                                         @Override
+                                                         public void onItemSelected(AdapterView<?> adapterView, View view, int i, long l)
+                                                         {
+                                                             _mSettings.putString("Interpreters", _mInterpreters.getSelectedItem().toString());
+                                                         }
+
+                                                         @Override
+                                                         public void onNothingSelected(AdapterView<?> adapterView)
+                                                         {
+                                                         }
+                                                     }
+
+        );
     }
 
     /**
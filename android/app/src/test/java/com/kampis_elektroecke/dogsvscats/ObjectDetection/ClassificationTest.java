@@ -0,0 +1,58 @@
+package com.kampis_elektroecke.dogsvscats.ObjectDetection;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class ClassificationTest
+{
+    private static final float[] SCORES = {0.1f, 0.5f, 0.05f, 0.3f, 0.05f};
+
+    @Test
+    public void selectsTheLargestValuesInDescendingOrder()
+    {
+        int[] Indices = new int[3];
+
+        assertEquals(3, Classification.TopK(SCORES, SCORES.length, Indices));
+        assertArrayEquals(new int[] {1, 3, 0}, Indices);
+    }
+
+    @Test
+    public void selectsOnlyTheAvailableValues()
+    {
+        int[] Indices = new int[4];
+
+        assertEquals(2, Classification.TopK(SCORES, 2, Indices));
+        assertEquals(1, Indices[0]);
+        assertEquals(0, Indices[1]);
+    }
+
+    @Test
+    public void selectsNothingForKZero()
+    {
+        assertEquals(0, Classification.TopK(SCORES, SCORES.length, new int[0]));
+        assertEquals(0, Classification.TopK(new float[0], 0, new int[2]));
+    }
+
+    @Test
+    public void findsTheLargestValue()
+    {
+        assertEquals(1, Classification.ArgMax(SCORES, SCORES.length));
+        assertEquals(-1, Classification.ArgMax(SCORES, 0));
+    }
+
+    @Test
+    public void updatesTheTopClasses()
+    {
+        float[] Scores = SCORES.clone();
+        Classification Result = new Classification(Scores, 10);
+
+        Result.update();
+
+        assertEquals(SCORES.length, Result.getTopCount());
+        assertEquals(1, Result.getBest());
+        assertEquals(0.5f, Result.getTopScore(0), 0.0f);
+        assertEquals(3, Result.getTopIndex(1));
+    }
+}
@@ -0,0 +1,71 @@
+package com.kampis_elektroecke.dogsvscats.ObjectDetection;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.Assert.assertEquals;
+
+public class InputFormatTest
+{
+    private static final int PIXEL = 0xFF102030;
+
+    /**
+     * Allocate an input buffer in native byte order.
+     * @param Values: Number of input values
+     * @param Format: Input format
+     * @return Input buffer
+     */
+    private static ByteBuffer _allocate(int Values, InputFormat Format)
+    {
+        return ByteBuffer.allocateDirect(Values * Format.getBytesPerValue()).order(ByteOrder.nativeOrder());
+    }
+
+    @Test
+    public void subtractsTheMeanInBGROrder()
+    {
+        Normalization Normalization = new Normalization(new float[] {1.0f, 2.0f, 3.0f}, new float[] {1.0f, 1.0f, 0.5f}, true);
+        InputFormat Format = InputFormat.Float(Normalization);
+        ByteBuffer Output = _allocate(3, Format);
+
+        PixelKernels.Pixels2ByteBuffer(new int[] {PIXEL}, 1, 3, Output, Format);
+
+        assertEquals((0x30 - 3.0f) * 0.5f, Output.getFloat(0), 0.0f);
+        assertEquals(0x20 - 2.0f, Output.getFloat(4), 0.0f);
+        assertEquals(0x10 - 1.0f, Output.getFloat(8), 0.0f);
+    }
+
+    @Test
+    public void quantizesAndClampsTheValues()
+    {
+        InputFormat Format = InputFormat.Quantized(2.0f, -128, true);
+        ByteBuffer Output = _allocate(3, Format);
+
+        PixelKernels.Pixels2ByteBuffer(new int[] {0xFF00FFFF}, 1, 3, Output, Format);
+
+        assertEquals(-128, Output.get(0));
+        assertEquals(0, Output.get(1));
+        assertEquals(0, Output.get(2));
+        assertEquals(1, Format.getBytesPerValue());
+    }
+
+    @Test
+    public void convertsAcrossSeveralChunks()
+    {
+        int Count = 1000;
+        int[] Pixels = new int[Count];
+        for(int i = 0; i < Count; i++)
+        {
+            Pixels[i] = 0xFF000000 | (i & 0xFF);
+        }
+        ByteBuffer Output = _allocate(Count, InputFormat.FLOAT);
+
+        PixelKernels.Pixels2ByteBuffer(Pixels, Count, 1, Output, InputFormat.FLOAT);
+
+        for(int i = 0; i < Count; i++)
+        {
+            assertEquals(i & 0xFF, Output.getFloat(i * 4), 0.0f);
+        }
+    }
+}
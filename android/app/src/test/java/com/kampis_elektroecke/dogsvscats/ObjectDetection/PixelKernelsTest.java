@@ -0,0 +1,92 @@
+package com.kampis_elektroecke.dogsvscats.ObjectDetection;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.Assert.assertEquals;
+
+public class PixelKernelsTest
+{
+    private static final int PIXEL = 0xFF102030;
+
+    /**
+     * Allocate an input buffer in native byte order.
+     * @param Values: Number of input values
+     * @param Format: Input format
+     * @return Input buffer
+     */
+    private static ByteBuffer _allocate(int Values, InputFormat Format)
+    {
+        return ByteBuffer.allocateDirect(Values * Format.getBytesPerValue()).order(ByteOrder.nativeOrder());
+    }
+
+    @Test
+    public void writesRawValuesInRGBOrder()
+    {
+        ByteBuffer Output = _allocate(6, InputFormat.FLOAT);
+
+        PixelKernels.Pixels2ByteBuffer(new int[] {PIXEL, PIXEL}, 2, 3, Output, InputFormat.FLOAT);
+
+        assertEquals(0x10, Output.getFloat(0), 0.0f);
+        assertEquals(0x20, Output.getFloat(4), 0.0f);
+        assertEquals(0x30, Output.getFloat(8), 0.0f);
+        assertEquals(0x10, Output.getFloat(12), 0.0f);
+        assertEquals(0, Output.position());
+    }
+
+    @Test
+    public void convertsYUVWithTheBT601Coefficients()
+    {
+        InputFormat Format = InputFormat.Quantized(1.0f, 0, false);
+        ByteBuffer Y = ByteBuffer.allocate(4);
+        ByteBuffer U = ByteBuffer.allocate(1);
+        ByteBuffer V = ByteBuffer.allocate(1);
+        ByteBuffer Output = _allocate(12, Format);
+
+        for(int i = 0; i < 4; i++)
+        {
+            Y.put(i, (byte)100);
+        }
+        U.put(0, (byte)128);
+        V.put(0, (byte)178);
+
+        PixelKernels.YUV2ByteBuffer(Y, U, V, 2, 1, 1, 0, 0, 2, 2, 2, 2, 3, Output, Format);
+
+        for(int i = 0; i < 4; i++)
+        {
+            assertEquals(170, Output.get(3 * i) & 0xFF);
+            assertEquals(65, Output.get((3 * i) + 1) & 0xFF);
+            assertEquals(100, Output.get((3 * i) + 2) & 0xFF);
+        }
+    }
+
+    @Test
+    public void scalesTheRegionOfInterest()
+    {
+        int Size = 8;
+        ByteBuffer Y = ByteBuffer.allocate(Size * Size);
+        ByteBuffer UV = ByteBuffer.allocate((Size / 2) * (Size / 2));
+        ByteBuffer Output = _allocate(4, InputFormat.FLOAT);
+
+        for(int y = 0; y < Size; y++)
+        {
+            for(int x = 0; x < Size; x++)
+            {
+                Y.put((y * Size) + x, (byte)((y * 10) + x));
+            }
+        }
+        for(int i = 0; i < UV.capacity(); i++)
+        {
+            UV.put(i, (byte)128);
+        }
+
+        PixelKernels.YUV2ByteBuffer(Y, UV, UV, Size, Size / 2, 1, 4, 2, 4, 4, 2, 2, 1, Output, InputFormat.FLOAT);
+
+        assertEquals(24, Output.getFloat(0), 0.0f);
+        assertEquals(26, Output.getFloat(4), 0.0f);
+        assertEquals(44, Output.getFloat(8), 0.0f);
+        assertEquals(46, Output.getFloat(12), 0.0f);
+    }
+}
@@ -0,0 +1,138 @@
+package com.kampis_elektroecke.dogsvscats.ObjectDetection;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SyntheticEngineTest
+{
+    private static final int WIDTH = 32;
+    private static final int HEIGHT = 24;
+    private static final int CHANNELS = 3;
+    private static final int CLASSES = 4;
+    private static final float PEAK = 0.7f;
+
+    /**
+     * Create an input buffer with random bytes.
+     * @param Seed: Seed of the content
+     * @param Images: Number of images
+     * @return Input buffer
+     */
+    private static ByteBuffer _createInput(int Seed, int Images)
+    {
+        ByteBuffer Input = ByteBuffer.allocateDirect(Images * WIDTH * HEIGHT * CHANNELS * 4).order(ByteOrder.nativeOrder());
+
+        java.util.Random Random = new java.util.Random(Seed);
+        while(Input.hasRemaining())
+        {
+            Input.put((byte)Random.nextInt());
+        }
+        Input.rewind();
+
+        return Input;
+    }
+
+    @Test
+    public void reportsTheGeometryOfTheDescriptor()
+    {
+        ModelDescriptor Descriptor = new ModelDescriptor(WIDTH, HEIGHT, CHANNELS, InputFormat.FLOAT, CLASSES);
+        IInferenceEngine Engine = SyntheticEngine.Factory(Descriptor, 0, PEAK).create();
+
+        assertArrayEquals(new int[] {1, HEIGHT, WIDTH, CHANNELS}, Engine.getInputShape());
+        assertEquals(CLASSES, Engine.getClassCount());
+        assertEquals(InputFormat.FLOAT, Engine.getInputFormat());
+
+        ModelDescriptor Read = ModelDescriptor.fromEngine(Engine);
+        assertEquals(WIDTH, Read.getInputWidth());
+        assertEquals(HEIGHT, Read.getInputHeight());
+        assertEquals(CHANNELS, Read.getInputChannels());
+        assertEquals(CLASSES, Read.getClassCount());
+    }
+
+    @Test
+    public void predictsTheSameClassForTheSameInput()
+    {
+        SyntheticEngine Engine = new SyntheticEngine(InputFormat.FLOAT, WIDTH, HEIGHT, CHANNELS, CLASSES, 0, PEAK);
+        float[] First = new float[CLASSES];
+        float[] Second = new float[CLASSES];
+
+        Engine.run(_createInput(1, 1), 1);
+        Engine.readOutput(0, First);
+        Engine.run(_createInput(1, 1), 1);
+        Engine.readOutput(0, Second);
+
+        assertArrayEquals(First, Second, 0.0f);
+    }
+
+    @Test
+    public void distributesTheRestOverTheOtherClasses()
+    {
+        SyntheticEngine Engine = new SyntheticEngine(InputFormat.FLOAT, WIDTH, HEIGHT, CHANNELS, CLASSES, 0, PEAK);
+        float[] Output = new float[CLASSES];
+
+        Engine.run(_createInput(2, 1), 1);
+        Engine.readOutput(0, Output);
+
+        int Peaks = 0;
+        float Sum = 0.0f;
+        for(float Value : Output)
+        {
+            Peaks += (Value == PEAK) ? 1 : 0;
+            Sum += Value;
+        }
+
+        assertEquals(1, Peaks);
+        assertEquals(1.0f, Sum, 1e-5f);
+    }
+
+    @Test
+    public void classifiesEachImageOfABatch()
+    {
+        SyntheticEngine Engine = new SyntheticEngine(InputFormat.FLOAT, WIDTH, HEIGHT, CHANNELS, CLASSES, 0, PEAK);
+        SyntheticEngine Single = new SyntheticEngine(InputFormat.FLOAT, WIDTH, HEIGHT, CHANNELS, CLASSES, 0, PEAK);
+        int ImageBytes = WIDTH * HEIGHT * CHANNELS * 4;
+
+        ByteBuffer Batch = _createInput(3, 3);
+        Engine.run(Batch, 3);
+
+        for(int i = 0; i < 3; i++)
+        {
+            Batch.position(i * ImageBytes);
+            Batch.limit((i + 1) * ImageBytes);
+            ByteBuffer Image = ByteBuffer.allocateDirect(ImageBytes);
+            Image.put(Batch);
+            Image.rewind();
+            Batch.clear();
+
+            float[] Expected = new float[CLASSES];
+            float[] Output = new float[CLASSES];
+            Single.run(Image, 1);
+            Single.readOutput(0, Expected);
+            Engine.readOutput(i, Output);
+
+            assertArrayEquals(Expected, Output, 0.0f);
+        }
+    }
+
+    @Test
+    public void waitsForTheConfiguredLatency()
+    {
+        SyntheticEngine Engine = new SyntheticEngine(InputFormat.FLOAT, WIDTH, HEIGHT, CHANNELS, CLASSES, 2000, PEAK);
+
+        long Start = System.nanoTime();
+        Engine.run(_createInput(4, 2), 2);
+
+        assertTrue((System.nanoTime() - Start) >= 4000000L);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsAModelWithoutClasses()
+    {
+        new SyntheticEngine(InputFormat.FLOAT, WIDTH, HEIGHT, CHANNELS, 0, 0, PEAK);
+    }
+}
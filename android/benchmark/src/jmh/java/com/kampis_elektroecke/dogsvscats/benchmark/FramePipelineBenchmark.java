@@ -0,0 +1,193 @@
+package com.kampis_elektroecke.dogsvscats.benchmark;
+
+import com.kampis_elektroecke.dogsvscats.ObjectDetection.FramePipeline;
+import com.kampis_elektroecke.dogsvscats.ObjectDetection.InputFormat;
+import com.kampis_elektroecke.dogsvscats.ObjectDetection.InterpreterPool;
+import com.kampis_elektroecke.dogsvscats.ObjectDetection.ModelDescriptor;
+import com.kampis_elektroecke.dogsvscats.ObjectDetection.PixelKernels;
+import com.kampis_elektroecke.dogsvscats.ObjectDetection.PooledInterpreter;
+import com.kampis_elektroecke.dogsvscats.ObjectDetection.SyntheticEngine;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Throughput and backpressure of the three stage frame pipeline of the continuous classification.
+ * One thread per stage passes the slots through the lock-free queues like the camera reader thread,
+ * the inference thread and the main thread of the app. The capture stage produces a frame per frame interval
+ * and drops it if all slots are in use.
+ * The Captured, Dropped, Classified and Published counters are the rates of each stage, the raw operation
+ * rate also counts the polls of empty queues. Run with -prof gc for the allocation rate of the stages.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class FramePipelineBenchmark
+{
+    private static final int SIZE = 227;
+    private static final int CHANNELS = 3;
+    private static final int CLASSES = 2;
+    private static final int TOP_K = 5;
+
+    @Param({"3"})
+    public int Depth;
+
+    @Param({"10000", "50000"})
+    public long LatencyUs;
+
+    /**
+     * Frame interval of each producing thread. 33333 us is a camera with 30 frames per second.
+     */
+    @Param({"33333"})
+    public long FrameIntervalUs;
+
+    private InterpreterPool _mPool;
+
+    private FramePipeline _mPipeline;
+
+    private int[] _mPixel;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Counters
+    {
+        public long Captured;
+        public long Dropped;
+        public long Classified;
+        public long Published;
+
+        private long _mNextFrame;
+
+        /**
+         * Wait for the next frame of the producing thread.
+         * @param IntervalNs: Frame interval
+         */
+        void awaitFrame(long IntervalNs)
+        {
+            long Now = System.nanoTime();
+            if(_mNextFrame > Now)
+            {
+                LockSupport.parkNanos(_mNextFrame - Now);
+            }
+
+            _mNextFrame = Math.max(_mNextFrame, Now) + IntervalNs;
+        }
+
+        @Setup(Level.Iteration)
+        public void reset()
+        {
+            _mNextFrame = 0;
+            Captured = 0;
+            Dropped = 0;
+            Classified = 0;
+            Published = 0;
+        }
+    }
+
+    @Setup
+    public void setup()
+    {
+        Random Generator = new Random(42);
+
+        _mPixel = new int[SIZE * SIZE];
+        for(int i = 0; i < _mPixel.length; i++)
+        {
+            _mPixel[i] = 0xFF000000 | Generator.nextInt(0x01000000);
+        }
+
+        ModelDescriptor Descriptor = new ModelDescriptor(SIZE, SIZE, CHANNELS, InputFormat.FLOAT, CLASSES);
+        _mPool = new InterpreterPool(SyntheticEngine.Factory(Descriptor, LatencyUs, 0.9f), 1, TOP_K);
+        _mPipeline = new FramePipeline(Descriptor, Depth, TOP_K);
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        _mPool.close();
+    }
+
+    @Benchmark
+    @Group("Pipeline")
+    @GroupThreads(1)
+    public void capture(Counters Statistics)
+    {
+        Statistics.awaitFrame(FrameIntervalUs * 1000);
+
+        int Index = _mPipeline.claim();
+        if(Index == -1)
+        {
+            Statistics.Dropped++;
+
+            return;
+        }
+
+        FramePipeline.Slot Slot = _mPipeline.getSlot(Index);
+        PixelKernels.Pixels2ByteBuffer(_mPixel, _mPixel.length, CHANNELS, Slot.Input, Slot.Floats, _mPipeline.getDescriptor().getInputFormat());
+
+        _mPipeline.submit(Index);
+        Statistics.Captured++;
+    }
+
+    @Benchmark
+    @Group("Pipeline")
+    @GroupThreads(1)
+    public void inference(Counters Statistics)
+    {
+        int Index = _mPipeline.take();
+        if(Index == -1)
+        {
+            Thread.yield();
+
+            return;
+        }
+
+        FramePipeline.Slot Slot = _mPipeline.getSlot(Index);
+
+        // The inference thread is the only user of the pool, so an interpreter is always free
+        PooledInterpreter Interpreter = _mPool.tryAcquire();
+        try
+        {
+            Interpreter.run(Slot.Input);
+            Interpreter.readOutput(Slot.Scores);
+        }
+        finally
+        {
+            _mPool.release(Interpreter);
+        }
+
+        _mPipeline.complete(Index);
+        Statistics.Classified++;
+    }
+
+    @Benchmark
+    @Group("Pipeline")
+    @GroupThreads(1)
+    public void publish(Counters Statistics)
+    {
+        int Index = _mPipeline.collect();
+        if(Index == -1)
+        {
+            Thread.yield();
+
+            return;
+        }
+
+        _mPipeline.recycle(Index);
+        Statistics.Published++;
+    }
+}
@@ -0,0 +1,96 @@
+package com.kampis_elektroecke.dogsvscats.benchmark;
+
+import com.kampis_elektroecke.dogsvscats.ObjectDetection.Classification;
+import com.kampis_elektroecke.dogsvscats.ObjectDetection.IInferenceEngine;
+import com.kampis_elektroecke.dogsvscats.ObjectDetection.InputFormat;
+import com.kampis_elektroecke.dogsvscats.ObjectDetection.PixelKernels;
+import com.kampis_elektroecke.dogsvscats.ObjectDetection.SyntheticEngine;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the complete classification of a frame with the synthetic engine.
+ * Each benchmark thread owns its engine and buffers like an interpreter of the pool, so the scaling
+ * can be measured with -t and the allocation rate with -prof gc.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class PipelineBenchmark
+{
+    private static final int SIZE = 227;
+    private static final int CHANNELS = 3;
+    private static final int CLASSES = 2;
+    private static final int TOP_K = 5;
+
+    @Param({"0", "1000", "30000"})
+    public long LatencyUs;
+
+    @Param({"float", "uint8"})
+    public String Format;
+
+    private int[] _mPixel;
+
+    private ByteBuffer _mInput;
+    private FloatBuffer _mFloats;
+
+    private IInferenceEngine _mEngine;
+
+    private float[] _mOutput;
+
+    private int[] _mIndices;
+
+    @Setup
+    public void setup()
+    {
+        Random Generator = new Random(42);
+
+        _mPixel = new int[SIZE * SIZE];
+        for(int i = 0; i < _mPixel.length; i++)
+        {
+            _mPixel[i] = 0xFF000000 | Generator.nextInt(0x01000000);
+        }
+
+        InputFormat Input = Format.equals("float") ? InputFormat.FLOAT : InputFormat.Quantized(1.0f, 0, false);
+
+        _mEngine = SyntheticEngine.Factory(Input, SIZE, SIZE, CHANNELS, CLASSES, LatencyUs, 0.9f).create();
+
+        _mInput = ByteBuffer.allocateDirect(SIZE * SIZE * CHANNELS * Input.getBytesPerValue());
+        _mInput.order(ByteOrder.nativeOrder());
+        _mFloats = Input.createFloatView(_mInput);
+
+        _mOutput = new float[CLASSES];
+        _mIndices = new int[TOP_K];
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        _mEngine.close();
+    }
+
+    @Benchmark
+    public int classify()
+    {
+        PixelKernels.Pixels2ByteBuffer(_mPixel, _mPixel.length, CHANNELS, _mInput, _mFloats, _mEngine.getInputFormat());
+
+        _mEngine.run(_mInput, 1);
+        _mEngine.readOutput(0, _mOutput);
+
+        return Classification.TopK(_mOutput, CLASSES, _mIndices);
+    }
+}
@@ -0,0 +1,145 @@
+package com.kampis_elektroecke.dogsvscats.benchmark;
+
+import com.kampis_elektroecke.dogsvscats.ObjectDetection.InputFormat;
+import com.kampis_elektroecke.dogsvscats.ObjectDetection.InterpreterPool;
+import com.kampis_elektroecke.dogsvscats.ObjectDetection.ModelDescriptor;
+import com.kampis_elektroecke.dogsvscats.ObjectDetection.PixelKernels;
+import com.kampis_elektroecke.dogsvscats.ObjectDetection.PooledInterpreter;
+import com.kampis_elektroecke.dogsvscats.ObjectDetection.SyntheticEngine;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Throughput and backpressure of the interpreter pool. More benchmark threads than interpreters compete for
+ * the pool like the camera, the batch mode and the shutter. Each thread produces a frame per frame interval and
+ * drops it like the pipeline does if no interpreter is free. The Classified and Dropped counters show the backpressure.
+ * Run with -prof gc for the allocation rate of the classification path.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(4)
+public class PoolBenchmark
+{
+    private static final int SIZE = 227;
+    private static final int CHANNELS = 3;
+    private static final int CLASSES = 2;
+    private static final int TOP_K = 5;
+
+    @Param({"1", "2", "4"})
+    public int PoolSize;
+
+    @Param({"10000", "50000"})
+    public long LatencyUs;
+
+    /**
+     * Frame interval of each producing thread. 33333 us is a camera with 30 frames per second.
+     */
+    @Param({"33333"})
+    public long FrameIntervalUs;
+
+    private InterpreterPool _mPool;
+
+    private int[] _mPixel;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Counters
+    {
+        public long Classified;
+        public long Dropped;
+
+        private long _mNextFrame;
+
+        /**
+         * Wait for the next frame of the producing thread.
+         * @param IntervalNs: Frame interval
+         */
+        void awaitFrame(long IntervalNs)
+        {
+            long Now = System.nanoTime();
+            if(_mNextFrame > Now)
+            {
+                LockSupport.parkNanos(_mNextFrame - Now);
+            }
+
+            _mNextFrame = Math.max(_mNextFrame, Now) + IntervalNs;
+        }
+
+        @Setup(Level.Iteration)
+        public void reset()
+        {
+            _mNextFrame = 0;
+            Classified = 0;
+            Dropped = 0;
+        }
+    }
+
+    @Setup
+    public void setup()
+    {
+        Random Generator = new Random(42);
+
+        _mPixel = new int[SIZE * SIZE];
+        for(int i = 0; i < _mPixel.length; i++)
+        {
+            _mPixel[i] = 0xFF000000 | Generator.nextInt(0x01000000);
+        }
+
+        ModelDescriptor Descriptor = new ModelDescriptor(SIZE, SIZE, CHANNELS, InputFormat.FLOAT, CLASSES);
+        _mPool = new InterpreterPool(SyntheticEngine.Factory(Descriptor, LatencyUs, 0.9f), PoolSize, TOP_K);
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        _mPool.close();
+    }
+
+    @Benchmark
+    public int classify(Counters Statistics)
+    {
+        Statistics.awaitFrame(FrameIntervalUs * 1000);
+
+        PooledInterpreter Interpreter = _mPool.tryAcquire();
+        if(Interpreter == null)
+        {
+            Statistics.Dropped++;
+
+            return -1;
+        }
+
+        try
+        {
+            ModelDescriptor Descriptor = Interpreter.getDescriptor();
+            PixelKernels.Pixels2ByteBuffer(_mPixel, _mPixel.length, CHANNELS, Interpreter.getInput(), Interpreter.getInputFloats(),
+                    Descriptor.getInputFormat());
+
+            Interpreter.run();
+            Interpreter.readResult();
+        }
+        finally
+        {
+            _mPool.release(Interpreter);
+        }
+
+        Statistics.Classified++;
+
+        return Interpreter.getResult().getBest();
+    }
+}
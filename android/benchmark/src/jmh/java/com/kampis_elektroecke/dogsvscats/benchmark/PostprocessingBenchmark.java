@@ -0,0 +1,93 @@
+package com.kampis_elektroecke.dogsvscats.benchmark;
+
+import com.kampis_elektroecke.dogsvscats.ObjectDetection.Classification;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for the handling of the model output.
+ * The boxed path is the list based result handling which was used before the Classification class.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PostprocessingBenchmark
+{
+    private static final int TOP_K = 5;
+
+    @Param({"2", "1000"})
+    public int Classes;
+
+    private float[][] _mOutput;
+
+    private float[] _mResult;
+
+    private int[] _mIndices;
+
+    @Setup
+    public void setup()
+    {
+        Random Generator = new Random(42);
+
+        _mOutput = new float[1][Classes];
+        for(int i = 0; i < Classes; i++)
+        {
+            _mOutput[0][i] = Generator.nextFloat();
+        }
+
+        _mResult = new float[Classes];
+        _mIndices = new int[TOP_K];
+    }
+
+    @Benchmark
+    public int boxedArgMax()
+    {
+        List<Float> Result = new ArrayList<>();
+        for(float Value : _mOutput[0])
+        {
+            Result.add(Value);
+        }
+
+        return Result.indexOf(Collections.max(Result));
+    }
+
+    @Benchmark
+    public int primitiveArgMax()
+    {
+        System.arraycopy(_mOutput[0], 0, _mResult, 0, Classes);
+
+        return Classification.ArgMax(_mResult, Classes);
+    }
+
+    @Benchmark
+    public int boxedTopK()
+    {
+        List<Integer> Indices = new ArrayList<>();
+        for(int i = 0; i < Classes; i++)
+        {
+            Indices.add(i);
+        }
+        Indices.sort((a, b) -> Float.compare(_mOutput[0][b], _mOutput[0][a]));
+
+        return Indices.subList(0, Math.min(TOP_K, Classes)).get(0);
+    }
+
+    @Benchmark
+    public int primitiveTopK()
+    {
+        return Classification.TopK(_mOutput[0], Classes, _mIndices);
+    }
+}
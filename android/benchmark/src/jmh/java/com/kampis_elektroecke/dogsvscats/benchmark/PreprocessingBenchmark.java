@@ -0,0 +1,119 @@
+package com.kampis_elektroecke.dogsvscats.benchmark;
+
+import com.kampis_elektroecke.dogsvscats.ObjectDetection.InputFormat;
+import com.kampis_elektroecke.dogsvscats.ObjectDetection.PixelKernels;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for the conversion of camera and bitmap pixels into the model input.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PreprocessingBenchmark
+{
+    private static final int CHANNELS = 3;
+
+    @Param({"227", "454", "908"})
+    public int Size;
+
+    private int[] _mPixel;
+
+    private ByteBuffer _mY;
+    private ByteBuffer _mU;
+    private ByteBuffer _mV;
+
+    private ByteBuffer _mFloatInput;
+    private ByteBuffer _mQuantizedInput;
+    private FloatBuffer _mFloats;
+
+    private InputFormat _mQuantized;
+
+    /**
+     * Create a direct buffer in native byte order like the interpreter input.
+     * @param Bytes: Buffer size
+     * @return Byte buffer
+     */
+    private static ByteBuffer _allocate(int Bytes)
+    {
+        ByteBuffer Buffer = ByteBuffer.allocateDirect(Bytes);
+        Buffer.order(ByteOrder.nativeOrder());
+
+        return Buffer;
+    }
+
+    @Setup
+    public void setup()
+    {
+        Random Generator = new Random(42);
+        int Count = Size * Size;
+
+        // Opaque ARGB pixels like Bitmap.getPixels returns them
+        _mPixel = new int[Count];
+        for(int i = 0; i < Count; i++)
+        {
+            _mPixel[i] = 0xFF000000 | Generator.nextInt(0x01000000);
+        }
+
+        // Semi planar YUV_420 layout with interleaved chroma, as delivered by most camera HALs
+        byte[] Luma = new byte[Count];
+        byte[] Chroma = new byte[Count / 2 + Size];
+        Generator.nextBytes(Luma);
+        Generator.nextBytes(Chroma);
+        _mY = ByteBuffer.wrap(Luma);
+        _mU = ByteBuffer.wrap(Chroma);
+        _mV = ByteBuffer.wrap(Chroma, 1, Chroma.length - 1).slice();
+
+        _mQuantized = InputFormat.Quantized(1.0f, 0, false);
+
+        _mFloatInput = _allocate(Count * CHANNELS * InputFormat.FLOAT.getBytesPerValue());
+        _mFloats = InputFormat.FLOAT.createFloatView(_mFloatInput);
+        _mQuantizedInput = _allocate(Count * CHANNELS * _mQuantized.getBytesPerValue());
+    }
+
+    @Benchmark
+    public ByteBuffer pixelsToFloat()
+    {
+        PixelKernels.Pixels2ByteBuffer(_mPixel, _mPixel.length, CHANNELS, _mFloatInput, _mFloats, InputFormat.FLOAT);
+
+        return _mFloatInput;
+    }
+
+    @Benchmark
+    public ByteBuffer pixelsToQuantized()
+    {
+        PixelKernels.Pixels2ByteBuffer(_mPixel, _mPixel.length, CHANNELS, _mQuantizedInput, null, _mQuantized);
+
+        return _mQuantizedInput;
+    }
+
+    @Benchmark
+    public ByteBuffer yuvToFloat()
+    {
+        PixelKernels.YUV2ByteBuffer(_mY, _mU, _mV, Size, Size, 2, 0, 0, Size, Size, Size, Size, CHANNELS, _mFloatInput, _mFloats, InputFormat.FLOAT);
+
+        return _mFloatInput;
+    }
+
+    @Benchmark
+    public ByteBuffer yuvToQuantized()
+    {
+        PixelKernels.YUV2ByteBuffer(_mY, _mU, _mV, Size, Size, 2, 0, 0, Size, Size, Size, Size, CHANNELS, _mQuantizedInput, null, _mQuantized);
+
+        return _mQuantizedInput;
+    }
+}